@@ -3,19 +3,56 @@ package org.roux;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.stage.Stage;
+import org.json.simple.parser.ParseException;
 import org.roux.application.ApplicationLibrary;
 import org.roux.gui.window.ErrorWindow;
 import org.roux.gui.window.SearchWindow;
 import org.roux.utils.FileManager;
+import org.roux.utils.LibraryWatcher;
+import org.roux.utils.StartupReport;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class JavaFXApplication extends Application {
 
-    private final ApplicationLibrary applicationLibrary = new ApplicationLibrary();
+    private static CompletableFuture<ApplicationLibrary> loading = null;
+
+    // Null until loaded
+    private ApplicationLibrary applicationLibrary;
+    private LibraryWatcher libraryWatcher;
 
     public static void main(final String[] args) {
+        // The data is read while the toolkit starts
+        startLoading();
         launch(args);
     }
 
+    /**
+     * Reads the settings and the library on a thread of their own, once
+     */
+    private static synchronized void startLoading() {
+        if(loading != null) return;
+
+        StartupReport.mark("launch");
+        loading = CompletableFuture.supplyAsync(() -> {
+            try {
+                FileManager.parse();
+            } catch(final IOException | ParseException e) {
+                throw new CompletionException(e);
+            }
+            StartupReport.mark("data");
+            final ApplicationLibrary applicationLibrary = new ApplicationLibrary();
+            StartupReport.mark("library");
+            return applicationLibrary;
+        }, runnable -> {
+            final Thread thread = new Thread(runnable, "load");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
     @Override
     public void init() throws Exception {
         super.init();
@@ -24,9 +61,30 @@ public class JavaFXApplication extends Application {
     @Override
     public void start(final Stage stage) {
         Thread.setDefaultUncaughtExceptionHandler(JavaFXApplication::showError);
+        StartupReport.mark("toolkit");
 
-        final SearchWindow searchWindow = new SearchWindow(applicationLibrary);
+        final SearchWindow searchWindow = new SearchWindow();
         searchWindow.show();
+        StartupReport.mark("window");
+
+        startLoading();
+        loading.whenComplete((library, error) -> Platform.runLater(() -> {
+            if(error != null) {
+                // The library stays unloaded, nothing gets saved over data.json
+                showError(Thread.currentThread(), error instanceof CompletionException
+                        && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            applicationLibrary = library;
+            FileManager.startSaving(applicationLibrary);
+            searchWindow.setLibrary(applicationLibrary,
+                                    () -> StartupReport.print("search index"));
+            if(FileManager.getConfiguration().isWatchFolders()) {
+                libraryWatcher = new LibraryWatcher(applicationLibrary);
+                libraryWatcher.start();
+            }
+            StartupReport.mark("ready");
+        }));
     }
 
     private static void showError(final Thread t, final Throwable e) {
@@ -40,7 +98,11 @@ public class JavaFXApplication extends Application {
 
     @Override
     public void stop() throws Exception {
-        FileManager.save(applicationLibrary);
+        if(libraryWatcher != null)
+            libraryWatcher.stop();
+        // Closed before the library was loaded, nothing changed
+        if(applicationLibrary != null)
+            FileManager.save(applicationLibrary);
         super.stop();
     }
 }
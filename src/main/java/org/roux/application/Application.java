@@ -9,32 +9,68 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 public class Application {
 
+    /**
+     * A launch weighs half as much a week later
+     */
+    private static final double DECAY_PER_MILLI = Math.log(2) / TimeUnit.DAYS.toMillis(7);
+
+    // Compiled once, every application loaded or scanned goes through them
+    private static final Pattern EXTENSION = Pattern.compile(".exe$");
+    private static final Pattern DOT = Pattern.compile("([^A-Z])(\\.)([a-zA-Z])");
+    private static final Pattern CAMEL_CASE = Pattern.compile("([0-9a-z])([A-Z])");
+    private static final Pattern DIGIT_LETTER = Pattern.compile("([0-9])([a-zA-Z])");
+    private static final Pattern UNDERSCORE = Pattern.compile("_");
+
     private Path executablePath;
     private String name;
     private List<String> keywords = new ArrayList<>();
     private final BooleanProperty isBlacklisted = new SimpleBooleanProperty(false);
+    private double frecency = Double.NEGATIVE_INFINITY;
+    private long lastLaunch = 0L;
 
     private static String beautifyName(final String name) {
-        return name.replaceAll(".exe$", "")
-                .replaceAll("(.*)(\\\\)(.*)", "$3")
-                .replaceAll("([^A-Z])(\\.)([a-zA-Z])", "$1 $3")
-                .replaceAll("([0-9a-z])([A-Z])", "$1 $2")
-                .replaceAll("([0-9])([a-zA-Z])", "$1 $2")
-                .replaceAll("_", " ");
+        String beautified = EXTENSION.matcher(name).replaceAll("");
+        // Keeps what follows the last backslash, a regex would backtrack over the whole name
+        beautified = beautified.substring(beautified.lastIndexOf('\\') + 1);
+        beautified = DOT.matcher(beautified).replaceAll("$1 $3");
+        beautified = CAMEL_CASE.matcher(beautified).replaceAll("$1 $2");
+        beautified = DIGIT_LETTER.matcher(beautified).replaceAll("$1 $2");
+        return UNDERSCORE.matcher(beautified).replaceAll(" ");
+    }
+
+    /**
+     * @return the application as it was saved, its name kept as is : it was already beautified,
+     * or chosen by the user
+     */
+    public static Application restore(final Path path, final String name) {
+        final Application application = new Application(path);
+        application.name = name;
+        return application;
+    }
+
+    public static Application restore(final String path, final String name) {
+        return restore(Paths.get(path), name);
     }
 
     public static Application copy(final Application source) {
-        final Application copy = new Application(source.getExecutablePath().toString(),
-                                                 source.getName());
+        final Application copy = restore(source.getExecutablePath(), source.getName());
         copy.getKeywords().addAll(source.getKeywords());
         copy.setBlacklisted(source.isBlacklisted());
+        copy.setFrecency(source.getFrecency());
+        copy.setLastLaunch(source.getLastLaunch());
 
         return copy;
     }
 
+    private Application(final Path path) {
+        executablePath = path;
+    }
+
     public Application(final Path path, final String name, final String... keywords) {
         executablePath = path;
         this.name = Application.beautifyName(name);
@@ -87,6 +123,43 @@ public class Application {
         this.isBlacklisted.set(isBlacklisted);
     }
 
+    /**
+     * Adds a launch to the frecency, the sum of every launch decayed exponentially since it
+     * happened
+     */
+    public void recordLaunch(final long timeMillis) {
+        final double now = DECAY_PER_MILLI * timeMillis;
+        frecency = frecency == Double.NEGATIVE_INFINITY
+                ? now : now + Math.log1p(Math.exp(frecency - now));
+        lastLaunch = timeMillis;
+    }
+
+    /**
+     * The frecency at time t is exp(frecency - DECAY_PER_MILLI * t) : stored that way it keeps
+     * the applications in the same order whatever the time, and only changes on a launch.
+     *
+     * @return the rank key, negative infinity if never launched
+     */
+    public double getFrecency() {
+        return frecency;
+    }
+
+    public void setFrecency(final double frecency) {
+        this.frecency = frecency;
+    }
+
+    public boolean isLaunched() {
+        return frecency != Double.NEGATIVE_INFINITY;
+    }
+
+    public long getLastLaunch() {
+        return lastLaunch;
+    }
+
+    public void setLastLaunch(final long lastLaunch) {
+        this.lastLaunch = lastLaunch;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if(this == o) return true;
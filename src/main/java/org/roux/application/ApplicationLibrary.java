@@ -6,36 +6,70 @@ import javafx.collections.ObservableList;
 import org.apache.commons.io.FilenameUtils;
 import org.roux.utils.FileManager;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class ApplicationLibrary {
 
     private static final String[] EXTENSIONS = {"exe"};
+    private static final Comparator<Application> BY_NAME =
+            (o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName());
 
     private final ObservableList<Application> library = FXCollections.observableArrayList();
+    /*
+     * Kept in sync through the library's own change events. Applications are never edited in
+     * place while in the library (the options work on copies), so keys do not go stale.
+     */
+    private final Map<Path, Application> applicationByPath = new HashMap<>();
+    private final Map<String, List<Application>> applicationsByName = new HashMap<>();
+    private final Map<String, List<Application>> applicationsByKeyword = new HashMap<>();
+    // How many visible applications bear each name, to tell when a name comes or goes
+    private final Map<String, Integer> visibleNameCounts = new HashMap<>();
+    private final List<Consumer<LibraryChange>> changeListeners = new ArrayList<>();
+    // Republished after every change, for the readers outside of the FX thread
+    private final AtomicReference<LibrarySnapshot> snapshot =
+            new AtomicReference<>(new LibrarySnapshot(0L, List.of()));
 
     public static boolean isExtensionAllowed(final String file) {
         return FilenameUtils.isExtension(file, ApplicationLibrary.EXTENSIONS);
     }
 
     public ApplicationLibrary() {
+        library.addListener(this::updateIndexes);
+        library.addListener((ListChangeListener<Application>) change -> snapshot.set(
+                new LibrarySnapshot(snapshot.get().getVersion() + 1, library)));
+        library.addListener(this::publishChange);
         // Check if they are applications in the data file
-        final List<Map<String, Object>> data = FileManager.getApplications();
+        final List<Application> data = FileManager.getApplications();
         if(data != null) {
-            data.forEach(map -> {
-                final Application application = convertMapToApplication(map);
-                library.add(application);
-            });
+            final List<Application> applications = new ArrayList<>(data);
+            applications.sort(BY_NAME);
+            library.setAll(applications);
         }
-        library.sort((o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName()));
     }
 
     public void updateLibrary(final Map<Path, Boolean> isBlacklistedByPath) {
+        updateLibrary(isBlacklistedByPath, false);
+    }
+
+    /**
+     * @param keepUnseen true to keep the applications missing from the given paths, when they
+     *                   come from a scan which did not go through everything
+     */
+    public void updateLibrary(final Map<Path, Boolean> isBlacklistedByPath,
+                              final boolean keepUnseen) {
         final List<Application> newApplications = new ArrayList<>();
         final Map<Path, String> executables = mergeExecutables(isBlacklistedByPath.keySet());
+        if(keepUnseen) {
+            library.stream()
+                    .filter(app -> !executables.containsKey(app.getExecutablePath()))
+                    .forEach(newApplications::add);
+        }
         for(final Map.Entry<Path, String> entry : executables.entrySet()) {
             final Path path = entry.getKey();
             final String name = entry.getValue();
@@ -49,11 +83,47 @@ public class ApplicationLibrary {
         }
         // Coucou moi du futur, si je veux plus tard ouvrir une fenetre après scan
         // scan retourner la liste newApplications
-        newApplications.sort((o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName()));
+        newApplications.sort(BY_NAME);
         library.setAll(newApplications);
         //        return library;
     }
 
+    /**
+     * Adds the executables which are not in the library yet, at their sorted place
+     */
+    public void addExecutables(final Collection<Path> executables) {
+        for(final Path path : executables) {
+            if(findSamePathApplication(path) != null) continue;
+
+            final Application application = new Application(path, deductName(path));
+            if(isBlacklisted(path))
+                application.setBlacklisted(true);
+            final int index = Collections.binarySearch(library, application, BY_NAME);
+            library.add(index < 0 ? -index - 1 : index, application);
+        }
+    }
+
+    /**
+     * Removes every application whose executable is this path or lies under it
+     */
+    public void removeExecutables(final Path path) {
+        library.removeAll(library.stream()
+                                  .filter(app -> app.getExecutablePath().startsWith(path))
+                                  .collect(Collectors.toList()));
+    }
+
+    /**
+     * Brings the applications under this folder in line with what has just been found in it :
+     * new executables are added, applications whose executable is gone are removed
+     */
+    public void updateFolder(final Path folder, final Collection<Path> executables) {
+        library.removeAll(library.stream()
+                                  .filter(app -> app.getExecutablePath().startsWith(folder))
+                                  .filter(app -> !Files.exists(app.getExecutablePath()))
+                                  .collect(Collectors.toList()));
+        addExecutables(executables);
+    }
+
     private Map<Path, String> mergeExecutables(final Set<Path> filesFromFolders) {
         final Map<Path, String> results = new HashMap<>();
         filesFromFolders.forEach(path -> results.put(path, deductName(path)));
@@ -71,98 +141,221 @@ public class ApplicationLibrary {
         return Paths.get(firstFolderPath).relativize(path).getName(0).toString();
     }
 
-    public Application findSamePathApplication(final Path path) {
-        return library.stream()
-                .filter(app -> app.getExecutablePath().equals(path))
-                .findFirst()
-                .orElse(null);
-    }
+    private void updateIndexes(final ListChangeListener.Change<? extends Application> change) {
+        while(change.next()) {
+            if(change.wasPermutated() || change.wasUpdated()) continue;
 
-    public List<String> filter(final SortedSet<String> entries, final String inputText) {
-        final List<String> filteredEntries = new ArrayList<>();
-        filteredEntries.addAll(
-                library.stream()
-                        .filter(application -> application.getKeywords().contains(inputText))
-                        .map(Application::getName)
-                        .collect(Collectors.toList())
-        );
-        filteredEntries.addAll(
-                entries.stream()
-                        .filter(entry -> !filteredEntries.contains(entry))
-                        .filter(entry -> entry.toLowerCase().startsWith(inputText.toLowerCase()))
-                        .collect(Collectors.toList())
-        );
-        filteredEntries.addAll(
-                entries.stream()
-                        .filter(entry -> !filteredEntries.contains(entry))
-                        .filter(entry -> entry.toLowerCase().contains(inputText.toLowerCase()))
-                        .collect(Collectors.toList())
-        );
-        return filteredEntries;
-    }
-
-    public List<Map<String, Object>> getLibraryAsJsonFriendly() {
-        return library.stream()
-                .map(ApplicationLibrary::convertApplicationToMap)
-                .collect(Collectors.toList());
+            for(final Application application : change.getRemoved()) {
+                applicationByPath.remove(application.getExecutablePath(), application);
+                final List<Application> sameName = applicationsByName.get(application.getName());
+                if(sameName != null) {
+                    sameName.remove(application);
+                    if(sameName.isEmpty())
+                        applicationsByName.remove(application.getName());
+                }
+                for(final String keyword : application.getKeywords()) {
+                    final List<Application> sameKeyword = applicationsByKeyword.get(keyword);
+                    if(sameKeyword != null) {
+                        sameKeyword.remove(application);
+                        if(sameKeyword.isEmpty())
+                            applicationsByKeyword.remove(keyword);
+                    }
+                }
+            }
+            for(final Application application : change.getAddedSubList()) {
+                applicationByPath.put(application.getExecutablePath(), application);
+                applicationsByName.computeIfAbsent(application.getName(), key -> new ArrayList<>(1))
+                        .add(application);
+                for(final String keyword : application.getKeywords()) {
+                    applicationsByKeyword.computeIfAbsent(keyword, key -> new ArrayList<>(1))
+                            .add(application);
+                }
+            }
+        }
     }
 
-    public static Map<String, Object> convertApplicationToMap(final Application application) {
-        final Map<String, Object> map = new HashMap<>();
-        map.put("name", application.getName());
-        map.put("path", application.getExecutablePath().toString());
-        map.put("keywords", application.getKeywords());
-        map.put("blacklisted", application.isBlacklisted());
+    /**
+     * Turns a change of the list into what it did to the visible names. Removed then added with
+     * the same executable but another name, an application was renamed.
+     */
+    private void publishChange(final ListChangeListener.Change<? extends Application> change) {
+        final List<Application> removed = new ArrayList<>();
+        final List<Application> added = new ArrayList<>();
+        while(change.next()) {
+            if(change.wasPermutated() || change.wasUpdated()) continue;
+            removed.addAll(change.getRemoved());
+            added.addAll(change.getAddedSubList());
+        }
+
+        final Map<String, Integer> countsBefore = new HashMap<>();
+        final Map<Path, String> removedNameByPath = new HashMap<>();
+        boolean keywordsTouched = false;
+        for(final Application application : removed) {
+            keywordsTouched |= !application.getKeywords().isEmpty();
+            if(application.isBlacklisted()) continue;
+            final String name = application.getName();
+            countsBefore.putIfAbsent(name, visibleNameCounts.getOrDefault(name, 0));
+            visibleNameCounts.merge(name, -1, Integer::sum);
+            removedNameByPath.put(application.getExecutablePath(), name);
+        }
+        final Map<String, Double> frecencies = new HashMap<>();
+        for(final Application application : added) {
+            keywordsTouched |= !application.getKeywords().isEmpty();
+            if(application.isBlacklisted()) continue;
+            final String name = application.getName();
+            countsBefore.putIfAbsent(name, visibleNameCounts.getOrDefault(name, 0));
+            visibleNameCounts.merge(name, 1, Integer::sum);
+            if(application.isLaunched())
+                frecencies.merge(name, application.getFrecency(), Math::max);
+        }
+
+        final Set<String> addedNames = new LinkedHashSet<>();
+        final Set<String> removedNames = new LinkedHashSet<>();
+        countsBefore.forEach((name, countBefore) -> {
+            final int count = visibleNameCounts.getOrDefault(name, 0);
+            if(count <= 0) visibleNameCounts.remove(name);
+            if(countBefore == 0 && count > 0) addedNames.add(name);
+            if(countBefore > 0 && count <= 0) removedNames.add(name);
+        });
+        final Map<String, String> newNameByOldName = new HashMap<>();
+        for(final Application application : added) {
+            final String oldName = removedNameByPath.get(application.getExecutablePath());
+            final String newName = application.getName();
+            if(oldName != null && removedNames.contains(oldName) && addedNames.contains(newName)) {
+                removedNames.remove(oldName);
+                addedNames.remove(newName);
+                newNameByOldName.put(oldName, newName);
+            }
+        }
 
-        return map;
+        final LibraryChange libraryChange = new LibraryChange(
+                new ArrayList<>(addedNames), new ArrayList<>(removedNames), newNameByOldName,
+                frecencies, keywordsTouched ? getNamesByKeyword() : null);
+        if(!libraryChange.isEmpty())
+            changeListeners.forEach(listener -> listener.accept(libraryChange));
     }
 
-    public static Application convertMapToApplication(final Map<String, Object> map) {
-        final String name = map.getOrDefault("name", "").toString();
-        final String path = map.getOrDefault("path", "").toString();
-        final Application application = new Application(path, name);
-        final boolean blacklisted = (boolean) map.getOrDefault("blacklisted", false);
-        application.setBlacklisted(blacklisted);
-        final List<String> keywords =
-                (List<String>) map.getOrDefault("keywords", new ArrayList<String>());
-        application.setKeywords(keywords);
+    public Application findSamePathApplication(final Path path) {
+        return applicationByPath.get(path);
+    }
 
-        return application;
+    /**
+     * @return the names of the applications having the input as a keyword, then the entries
+     * starting with it, then the ones containing it, then when there is still room and the fuzzy
+     * search is on, the ones holding its characters in order, at most limit of them
+     */
+    public static List<String> filter(final SearchIndex entries, final String inputText,
+                                      final int limit) {
+        // Each name is listed once, by the first tier matching it
+        final Set<String> filteredEntries = new LinkedHashSet<>();
+        for(final String name : entries.getNamesByKeyword(inputText)) {
+            if(filteredEntries.size() == limit) return new ArrayList<>(filteredEntries);
+            filteredEntries.add(name);
+        }
+        final int keywordMatches = filteredEntries.size();
+        // Asking for more in case some were already matched by keyword
+        for(final String entry : entries.search(inputText, limit + keywordMatches)) {
+            if(filteredEntries.size() == limit) break;
+            filteredEntries.add(entry);
+        }
+        if(filteredEntries.size() < limit && FileManager.getConfiguration().isFuzzySearch()) {
+            final int room = limit - filteredEntries.size();
+            for(final String entry : entries.searchFuzzy(inputText, room + keywordMatches)) {
+                if(filteredEntries.size() == limit) break;
+                filteredEntries.add(entry);
+            }
+        }
+        return new ArrayList<>(filteredEntries);
     }
 
     public static boolean isBlacklisted(final String path) {
-        return FileManager.getBlacklist().stream().anyMatch(path::startsWith);
+        return isBlacklisted(Paths.get(path));
     }
 
     public static boolean isBlacklisted(final Path path) {
-        return isBlacklisted(path.toString());
+        return FileManager.getBlacklistIndex().contains(path);
+    }
+
+    /**
+     * @return the paths split between blacklisted ones (true) and the others (false)
+     */
+    public static Map<Boolean, List<Path>> partitionByBlacklist(final Collection<Path> paths) {
+        return FileManager.getBlacklistIndex().partition(paths);
     }
 
     public Application getApplication(final String name) {
-        return library.stream()
-                .filter(application -> application.getName().equals(name))
-                .findFirst()
-                .orElse(null);
+        final List<Application> sameName = applicationsByName.get(name);
+        return sameName != null ? sameName.get(0) : null;
     }
 
     public List<String> getNames(final boolean seeBlacklisted) {
-        return library.stream()
+        return getSnapshot().getNames(seeBlacklisted);
+    }
+
+    /**
+     * @return a copy of the names of the applications having each keyword, blacklisted ones
+     * included
+     */
+    public Map<String, List<String>> getNamesByKeyword() {
+        final Map<String, List<String>> namesByKeyword = new HashMap<>();
+        applicationsByKeyword.forEach((keyword, applications) -> namesByKeyword.put(
+                keyword, applications.stream()
+                        .map(Application::getName)
+                        .collect(Collectors.toList())));
+        return namesByKeyword;
+    }
+
+    /**
+     * @return the frecency of the applications launched at least once, the highest one when
+     * several share a name
+     */
+    public Map<String, Double> getFrecencies(final boolean seeBlacklisted) {
+        return getSnapshot().getApplications().stream()
                 .filter(application -> (seeBlacklisted || !application.isBlacklisted()))
-                .map(Application::getName)
-                .collect(Collectors.toList());
+                .filter(Application::isLaunched)
+                .collect(Collectors.toMap(Application::getName, Application::getFrecency,
+                                          Math::max));
+    }
+
+    /**
+     * @return the library as of its last change, safe to read from any thread
+     */
+    public LibrarySnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Replaces the application by a copy having one more launch, applications are not edited in
+     * place while in the library
+     */
+    public void recordLaunch(final Application application, final long timeMillis) {
+        final int index = library.indexOf(application);
+        if(index < 0) return;
+
+        final Application launched = Application.copy(application);
+        launched.recordLaunch(timeMillis);
+        library.set(index, launched);
     }
 
     public void addListener(final ListChangeListener<Application> listener) {
         library.addListener(listener);
     }
 
+    /**
+     * @param listener told once per change of the library, setAll and updateLibrary included,
+     *                 of what it did to the visible names
+     */
+    public void addChangeListener(final Consumer<LibraryChange> listener) {
+        changeListeners.add(listener);
+    }
+
     /**
      * A way to make the application safer
      *
      * @return a list made of copies of the application !
      */
     public List<Application> getLibraryCopies() {
-        return library.stream()
+        return getSnapshot().getApplications().stream()
                 .map(Application::copy)
                 .collect(Collectors.toList());
     }
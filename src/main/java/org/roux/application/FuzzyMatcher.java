@@ -0,0 +1,176 @@
+package org.roux.application;
+
+/**
+ * Scores names holding the query as a subsequence, the way fzf does : every matched character
+ * counts, more so at the start of a word, on a camel case hump or right after the previous one,
+ * and the characters skipped in between cost a little. "wtchr3" finds "The Witcher 3".
+ * <p>
+ * Works on the char arrays the search index keeps, nothing is allocated per name.
+ */
+public class FuzzyMatcher {
+
+    public static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private static final int SCORE_MATCH = 16;
+    private static final int BONUS_WORD_START = 10;
+    private static final int BONUS_CAMEL_CASE = 8;
+    private static final int BONUS_CONSECUTIVE = 6;
+    private static final int BONUS_FIRST_CHARACTER = 4;
+    private static final int PENALTY_GAP = 1;
+
+    private FuzzyMatcher() {}
+
+    /**
+     * @param lowerQuery the query in lower case
+     * @param name       the name as displayed, to find camel case humps
+     * @param lowerName  the name in lower case, char by char so that it lines up with name
+     * @return the score of the best window holding the query, NO_MATCH if there is none or if it
+     * holds the query as a plain substring, which the strict search already found
+     */
+    public static int score(final char[] lowerQuery, final char[] name, final char[] lowerName) {
+        if(lowerQuery.length == 0 || lowerQuery.length > lowerName.length) return NO_MATCH;
+
+        // Forward : where the first complete subsequence ends
+        int q = 0;
+        int end = 0;
+        while(end < lowerName.length && q < lowerQuery.length) {
+            if(lowerName[end] == lowerQuery[q]) q++;
+            end++;
+        }
+        if(q < lowerQuery.length) return NO_MATCH;
+        // Anywhere in the name, not only in the first window
+        if(contains(lowerName, lowerQuery)) return NO_MATCH;
+
+        // Backward : the shortest window ending there
+        int start = end;
+        q = lowerQuery.length;
+        while(q > 0) {
+            start--;
+            if(lowerName[start] == lowerQuery[q - 1]) q--;
+        }
+
+        int score = 0;
+        int previousMatch = -2;
+        q = 0;
+        for(int i = start; i < end; i++) {
+            if(q == lowerQuery.length || lowerName[i] != lowerQuery[q]) {
+                score -= PENALTY_GAP;
+                continue;
+            }
+            score += SCORE_MATCH;
+            if(i == 0 || isWordStart(name[i - 1], name[i])) {
+                score += BONUS_WORD_START;
+            } else if(isHump(name[i - 1], name[i])) {
+                score += BONUS_CAMEL_CASE;
+            }
+            if(previousMatch == i - 1) score += BONUS_CONSECUTIVE;
+            if(q == 0 && i == 0) score += BONUS_FIRST_CHARACTER;
+            previousMatch = i;
+            q++;
+        }
+        return score;
+    }
+
+    private static boolean contains(final char[] lowerName, final char[] lowerQuery) {
+        for(int start = 0; start + lowerQuery.length <= lowerName.length; start++) {
+            int q = 0;
+            while(q < lowerQuery.length && lowerName[start + q] == lowerQuery[q]) q++;
+            if(q == lowerQuery.length) return true;
+        }
+        return false;
+    }
+
+    private static boolean isWordStart(final char previous, final char current) {
+        return !Character.isLetterOrDigit(previous) && Character.isLetterOrDigit(current);
+    }
+
+    private static boolean isHump(final char previous, final char current) {
+        return Character.isLowerCase(previous) && Character.isUpperCase(current)
+                || !Character.isDigit(previous) && Character.isDigit(current);
+    }
+
+    /**
+     * Keeps the best scored ids seen so far in a min heap of fixed size, the worst kept one on
+     * top. Ties go to the lowest rank, i.e. the name coming first.
+     */
+    public static class TopResults {
+        private final int[] scores;
+        private final int[] ranks;
+        private final int[] ids;
+        private int size = 0;
+
+        public TopResults(final int capacity) {
+            scores = new int[capacity];
+            ranks = new int[capacity];
+            ids = new int[capacity];
+        }
+
+        public void offer(final int score, final int rank, final int id) {
+            if(scores.length == 0) return;
+            if(size < scores.length) {
+                scores[size] = score;
+                ranks[size] = rank;
+                ids[size] = id;
+                siftUp(size++);
+            } else if(isWorse(0, score, rank)) {
+                scores[0] = score;
+                ranks[0] = rank;
+                ids[0] = id;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * @return the kept ids, best first, emptying the heap
+         */
+        public int[] drain() {
+            final int[] sorted = new int[size];
+            while(size > 0) {
+                sorted[size - 1] = ids[0];
+                size--;
+                swap(0, size);
+                siftDown(0);
+            }
+            return sorted;
+        }
+
+        // Whether the entry at i is worse than the given score and rank
+        private boolean isWorse(final int i, final int score, final int rank) {
+            return scores[i] < score || scores[i] == score && ranks[i] > rank;
+        }
+
+        private void siftUp(int i) {
+            while(i > 0) {
+                final int parent = (i - 1) / 2;
+                if(!isWorse(i, scores[parent], ranks[parent])) return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while(true) {
+                final int left = 2 * i + 1;
+                final int right = left + 1;
+                int worst = i;
+                if(left < size && isWorse(left, scores[worst], ranks[worst])) worst = left;
+                if(right < size && isWorse(right, scores[worst], ranks[worst])) worst = right;
+                if(worst == i) return;
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(final int i, final int j) {
+            final int score = scores[i];
+            final int rank = ranks[i];
+            final int id = ids[i];
+            scores[i] = scores[j];
+            ranks[i] = ranks[j];
+            ids[i] = ids[j];
+            scores[j] = score;
+            ranks[j] = rank;
+            ids[j] = id;
+        }
+    }
+}
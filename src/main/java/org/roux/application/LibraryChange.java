@@ -0,0 +1,82 @@
+package org.roux.application;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What one change to the library did to the names the search offers, blacklisted applications
+ * left aside. Immutable, so it can be applied on another thread.
+ */
+public class LibraryChange {
+
+    private final List<String> addedNames;
+    private final List<String> removedNames;
+    private final Map<String, String> newNameByOldName;
+    private final Map<String, Double> frecencies;
+    private final Map<String, List<String>> namesByKeyword;
+
+    public LibraryChange(final List<String> addedNames, final List<String> removedNames,
+                         final Map<String, String> newNameByOldName,
+                         final Map<String, Double> frecencies,
+                         final Map<String, List<String>> namesByKeyword) {
+        this.addedNames = Collections.unmodifiableList(addedNames);
+        this.removedNames = Collections.unmodifiableList(removedNames);
+        this.newNameByOldName = Collections.unmodifiableMap(newNameByOldName);
+        this.frecencies = Collections.unmodifiableMap(frecencies);
+        this.namesByKeyword = namesByKeyword != null
+                ? Collections.unmodifiableMap(namesByKeyword) : null;
+    }
+
+    public List<String> getAddedNames() {
+        return addedNames;
+    }
+
+    public List<String> getRemovedNames() {
+        return removedNames;
+    }
+
+    public Map<String, String> getNewNameByOldName() {
+        return newNameByOldName;
+    }
+
+    /**
+     * @return the frecency of the launched applications the change brought in
+     */
+    public Map<String, Double> getFrecencies() {
+        return frecencies;
+    }
+
+    /**
+     * @return every keyword's names, null when no application with keywords was touched
+     */
+    public Map<String, List<String>> getNamesByKeyword() {
+        return namesByKeyword;
+    }
+
+    public boolean isEmpty() {
+        return addedNames.isEmpty() && removedNames.isEmpty() && newNameByOldName.isEmpty()
+                && frecencies.isEmpty() && namesByKeyword == null;
+    }
+
+    /**
+     * Brings the index in line with the library, touching only the names that changed
+     */
+    public void applyTo(final SearchIndex index) {
+        removedNames.forEach(index::remove);
+        newNameByOldName.forEach((oldName, newName) -> {
+            index.remove(oldName);
+            index.add(newName);
+        });
+        index.addAll(addedNames);
+        frecencies.forEach(index::setFrecency);
+        if(namesByKeyword != null)
+            index.setNamesByKeyword(namesByKeyword);
+    }
+
+    @Override
+    public String toString() {
+        return "added = " + addedNames + ", removed = " + removedNames
+                + ", renamed = " + newNameByOldName;
+    }
+}
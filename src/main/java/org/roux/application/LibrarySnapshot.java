@@ -0,0 +1,52 @@
+package org.roux.application;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The library as it was after one change, readable from any thread. The list never changes, and
+ * the applications in it are not edited either : the library replaces an application by an
+ * edited copy instead.
+ */
+public class LibrarySnapshot {
+
+    private final long version;
+    private final List<Application> applications;
+    // Built on first use, racing threads may build it twice to the same result
+    private volatile Map<Path, Application> applicationByPath = null;
+
+    public LibrarySnapshot(final long version, final List<Application> applications) {
+        this.version = version;
+        this.applications = List.copyOf(applications);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Application> getApplications() {
+        return applications;
+    }
+
+    public Application findSamePathApplication(final Path path) {
+        Map<Path, Application> byPath = applicationByPath;
+        if(byPath == null) {
+            byPath = new HashMap<>();
+            for(final Application application : applications) {
+                byPath.put(application.getExecutablePath(), application);
+            }
+            applicationByPath = byPath;
+        }
+        return byPath.get(path);
+    }
+
+    public List<String> getNames(final boolean seeBlacklisted) {
+        return applications.stream()
+                .filter(application -> (seeBlacklisted || !application.isBlacklisted()))
+                .map(Application::getName)
+                .collect(Collectors.toList());
+    }
+}
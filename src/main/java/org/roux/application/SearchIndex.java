@@ -0,0 +1,396 @@
+package org.roux.application;
+
+import java.util.*;
+
+/**
+ * The names the search goes through, with their lower case form computed once and an inverted
+ * index of their 2 and 3 character grams, plus their first character. A query only checks the
+ * names holding every gram of it instead of the whole set.
+ * <p>
+ * Results come in tiers : the launched names containing the query, most frecent first, then
+ * the other names starting with it and the ones containing it, each sorted like the names
+ * themselves.
+ * <p>
+ * The matches of the last query are kept : while typing, the next query contains the previous
+ * one and only has to be checked against them. Deleting or editing in the middle of the text,
+ * or any change to the names, goes back to the posting lists.
+ */
+public class SearchIndex {
+
+    private static final int MIN_GRAM = 2;
+    private static final int MAX_GRAM = 3;
+    // Keeps the posting of the first character apart from the grams found anywhere
+    private static final long PREFIX_TAG = 1L << 62;
+
+    // By id, null once removed, ids are never reused until the next compaction
+    private final List<String> names = new ArrayList<>();
+    private final List<String> lowerNames = new ArrayList<>();
+    // For the fuzzy search, along with which letters and digits each name holds
+    private final List<char[]> nameChars = new ArrayList<>();
+    private final List<char[]> lowerNameChars = new ArrayList<>();
+    private long[] characterMasks = new long[16];
+    /*
+     * Frecency rank keys, negative infinity for the names never launched. Only a handful of names
+     * are ever launched, they are kept apart already sorted so a query merely goes through them.
+     */
+    private double[] frecencies = new double[16];
+    private final List<Integer> launchedIds = new ArrayList<>();
+    private Map<String, List<String>> namesByKeyword = Collections.emptyMap();
+    private final Map<String, Integer> idByName = new HashMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private int removedCount = 0;
+
+    // Sorted order of the ids, rebuilt lazily after a change
+    private int[] idByRank = null;
+    private int[] rankById = null;
+
+    // Every match of the last query, a query containing it can only match among them
+    private int version = 0;
+    private String lastQuery = null;
+    private IntList lastMatches = null;
+    private int lastVersion = -1;
+
+    public int size() {
+        return idByName.size();
+    }
+
+    public boolean contains(final String name) {
+        return idByName.containsKey(name);
+    }
+
+    public void clear() {
+        names.clear();
+        lowerNames.clear();
+        nameChars.clear();
+        lowerNameChars.clear();
+        launchedIds.clear();
+        idByName.clear();
+        postings.clear();
+        removedCount = 0;
+        idByRank = null;
+        rankById = null;
+        version++;
+    }
+
+    public void addAll(final Collection<String> names) {
+        names.forEach(this::add);
+    }
+
+    public boolean add(final String name) {
+        if(idByName.containsKey(name)) return false;
+
+        final int id = names.size();
+        final String lowerName = toLowerCase(name);
+        names.add(name);
+        lowerNames.add(lowerName);
+        nameChars.add(name.toCharArray());
+        lowerNameChars.add(lowerName.toCharArray());
+        if(id == characterMasks.length) {
+            characterMasks = Arrays.copyOf(characterMasks, id * 2);
+            frecencies = Arrays.copyOf(frecencies, id * 2);
+        }
+        characterMasks[id] = characterMask(lowerName);
+        frecencies[id] = Double.NEGATIVE_INFINITY;
+        idByName.put(name, id);
+        if(!lowerName.isEmpty())
+            postings.computeIfAbsent(gram(lowerName, 0, 1) | PREFIX_TAG, key -> new IntList())
+                    .add(id);
+        for(int n = MIN_GRAM; n <= MAX_GRAM; n++) {
+            for(int i = 0; i + n <= lowerName.length(); i++) {
+                final IntList posting =
+                        postings.computeIfAbsent(gram(lowerName, i, n), key -> new IntList());
+                // Ids only grow, so a repeated gram of this name is always the last one
+                if(posting.size == 0 || posting.data[posting.size - 1] != id)
+                    posting.add(id);
+            }
+        }
+        idByRank = null;
+        version++;
+        return true;
+    }
+
+    public boolean remove(final String name) {
+        final Integer id = idByName.remove(name);
+        if(id == null) return false;
+
+        names.set(id, null);
+        lowerNames.set(id, null);
+        nameChars.set(id, null);
+        lowerNameChars.set(id, null);
+        if(isLaunched(id))
+            launchedIds.remove(id);
+        removedCount++;
+        idByRank = null;
+        version++;
+        if(removedCount > 1024 && removedCount > idByName.size())
+            compact();
+        return true;
+    }
+
+    /**
+     * @param namesByKeyword the names of the applications having each keyword, replacing the
+     *                       previous ones
+     */
+    public void setNamesByKeyword(final Map<String, List<String>> namesByKeyword) {
+        this.namesByKeyword = namesByKeyword;
+    }
+
+    /**
+     * @return the names of the applications having exactly this keyword
+     */
+    public List<String> getNamesByKeyword(final String keyword) {
+        return namesByKeyword.getOrDefault(keyword, Collections.emptyList());
+    }
+
+    /**
+     * @param frecency the rank key of the name, see {@link Application#getFrecency()}
+     */
+    public void setFrecency(final String name, final double frecency) {
+        final Integer id = idByName.get(name);
+        if(id == null) return;
+
+        if(!isLaunched(id))
+            launchedIds.add(id);
+        frecencies[id] = frecency;
+        launchedIds.sort(Comparator.<Integer>comparingDouble(launchedId -> -frecencies[launchedId])
+                                 .thenComparing(names::get));
+    }
+
+    /**
+     * @return the launched names containing the query, then the first other names starting with
+     * it, then the ones only containing it, ignoring case, at most limit of them
+     */
+    public List<String> search(final String query, final int limit) {
+        final String lowerQuery = toLowerCase(query);
+        ensureOrder();
+        final List<String> results = new ArrayList<>();
+        for(final int id : launchedIds) {
+            if(results.size() == limit) return results;
+            if(lowerNames.get(id).contains(lowerQuery))
+                results.add(names.get(id));
+        }
+
+        final boolean refines = lastMatches != null && lastVersion == version
+                && lowerQuery.contains(lastQuery);
+        final IntList candidates = refines ? lastMatches : candidates(lowerQuery);
+        if(candidates == null) {
+            lastMatches = null;
+            searchShort(lowerQuery, limit, results);
+        } else {
+            searchCandidates(lowerQuery, candidates, limit, results);
+        }
+        return results;
+    }
+
+    private void searchCandidates(final String lowerQuery, final IntList candidates,
+                                  final int limit, final List<String> results) {
+        final BitSet prefixRanks = new BitSet();
+        final BitSet containsRanks = new BitSet();
+        final IntList matches = new IntList();
+        for(int i = 0; i < candidates.size; i++) {
+            final int id = candidates.data[i];
+            final String lowerName = lowerNames.get(id);
+            if(lowerName == null) continue;
+
+            if(lowerName.startsWith(lowerQuery)) {
+                matches.add(id);
+                if(!isLaunched(id)) prefixRanks.set(rankById[id]);
+            } else if(lowerName.contains(lowerQuery)) {
+                matches.add(id);
+                if(!isLaunched(id)) containsRanks.set(rankById[id]);
+            }
+        }
+        lastQuery = lowerQuery;
+        lastMatches = matches;
+        lastVersion = version;
+
+        for(int rank = prefixRanks.nextSetBit(0); rank >= 0 && results.size() < limit;
+            rank = prefixRanks.nextSetBit(rank + 1)) {
+            results.add(names.get(idByRank[rank]));
+        }
+        for(int rank = containsRanks.nextSetBit(0); rank >= 0 && results.size() < limit;
+            rank = containsRanks.nextSetBit(rank + 1)) {
+            results.add(names.get(idByRank[rank]));
+        }
+    }
+
+    /**
+     * Too short a query for the grams : the names starting with it come from the first character
+     * posting, then the names are gone through in order until there are enough results
+     */
+    private void searchShort(final String lowerQuery, final int limit,
+                             final List<String> results) {
+        if(lowerQuery.isEmpty()) {
+            for(int rank = 0; rank < idByRank.length && results.size() < limit; rank++) {
+                if(!isLaunched(idByRank[rank]))
+                    results.add(names.get(idByRank[rank]));
+            }
+            return;
+        }
+
+        final BitSet prefixRanks = new BitSet();
+        final IntList prefixIds = postings.get(gram(lowerQuery, 0, 1) | PREFIX_TAG);
+        for(int i = 0; prefixIds != null && i < prefixIds.size; i++) {
+            final int id = prefixIds.data[i];
+            if(lowerNames.get(id) != null && !isLaunched(id))
+                prefixRanks.set(rankById[id]);
+        }
+        for(int rank = prefixRanks.nextSetBit(0); rank >= 0 && results.size() < limit;
+            rank = prefixRanks.nextSetBit(rank + 1)) {
+            results.add(names.get(idByRank[rank]));
+        }
+        for(int rank = 0; rank < idByRank.length && results.size() < limit; rank++) {
+            final String lowerName = lowerNames.get(idByRank[rank]);
+            if(!lowerName.startsWith(lowerQuery) && lowerName.contains(lowerQuery)
+                    && !isLaunched(idByRank[rank]))
+                results.add(names.get(idByRank[rank]));
+        }
+    }
+
+    /**
+     * @return the best names holding the query as a subsequence but not as a substring, at most
+     * limit of them
+     * @see FuzzyMatcher
+     */
+    public List<String> searchFuzzy(final String query, final int limit) {
+        final String lowerText = toLowerCase(query);
+        // A single character is either a substring or nothing
+        if(lowerText.length() < 2) return new ArrayList<>();
+
+        final char[] lowerQuery = lowerText.toCharArray();
+        final long queryMask = characterMask(lowerText);
+        ensureOrder();
+
+        final FuzzyMatcher.TopResults best = new FuzzyMatcher.TopResults(limit);
+        for(int id = 0; id < names.size(); id++) {
+            // Rejected on the mask first, without touching the name
+            if((characterMasks[id] & queryMask) != queryMask) continue;
+            final char[] lowerName = lowerNameChars.get(id);
+            if(lowerName == null) continue;
+
+            final int score = FuzzyMatcher.score(lowerQuery, nameChars.get(id), lowerName);
+            if(score != FuzzyMatcher.NO_MATCH)
+                best.offer(score, rankById[id], id);
+        }
+
+        final List<String> results = new ArrayList<>();
+        for(final int id : best.drain()) {
+            results.add(names.get(id));
+        }
+        return results;
+    }
+
+    /**
+     * @return the ids holding every gram of the query, null when the query is too short to have
+     * any and every name is a candidate
+     */
+    private IntList candidates(final String lowerQuery) {
+        if(lowerQuery.length() < MIN_GRAM) return null;
+
+        final int n = Math.min(lowerQuery.length(), MAX_GRAM);
+        final List<IntList> lists = new ArrayList<>();
+        for(int i = 0; i + n <= lowerQuery.length(); i++) {
+            final IntList posting = postings.get(gram(lowerQuery, i, n));
+            if(posting == null) return new IntList();
+            lists.add(posting);
+        }
+        // Shortest first, the intersection can only shrink
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        IntList result = lists.get(0);
+        for(int i = 1; i < lists.size() && result.size > 0; i++) {
+            result = result.intersect(lists.get(i));
+        }
+        return result;
+    }
+
+    private void ensureOrder() {
+        if(idByRank != null) return;
+
+        final Integer[] ids = idByName.values().toArray(new Integer[0]);
+        Arrays.sort(ids, Comparator.comparing(names::get));
+        idByRank = new int[ids.length];
+        rankById = new int[names.size()];
+        for(int rank = 0; rank < ids.length; rank++) {
+            idByRank[rank] = ids[rank];
+            rankById[ids[rank]] = rank;
+        }
+    }
+
+    private boolean isLaunched(final int id) {
+        return frecencies[id] != Double.NEGATIVE_INFINITY;
+    }
+
+    private void compact() {
+        final List<String> live = new ArrayList<>(idByName.keySet());
+        final Map<String, Double> frecencyByName = new HashMap<>();
+        for(final int id : launchedIds) {
+            frecencyByName.put(names.get(id), frecencies[id]);
+        }
+        clear();
+        addAll(live);
+        frecencyByName.forEach(this::setFrecency);
+    }
+
+    // One bit per letter and digit, anything else is left to the matcher
+    /**
+     * Lower case one char at a time : String.toLowerCase may change the length, 'İ' gives two
+     * chars, and the fuzzy search needs each lower case char where the char was in the name
+     */
+    private static String toLowerCase(final String text) {
+        final char[] chars = text.toCharArray();
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static long characterMask(final String lowerText) {
+        long mask = 0L;
+        for(int i = 0; i < lowerText.length(); i++) {
+            final char c = lowerText.charAt(i);
+            if(c >= 'a' && c <= 'z') {
+                mask |= 1L << (c - 'a');
+            } else if(c >= '0' && c <= '9') {
+                mask |= 1L << (26 + c - '0');
+            }
+        }
+        return mask;
+    }
+
+    private static long gram(final String text, final int start, final int length) {
+        long key = length;
+        for(int i = start; i < start + length; i++) {
+            key = (key << 16) | text.charAt(i);
+        }
+        return key;
+    }
+
+    private static class IntList {
+        private int[] data = new int[4];
+        private int size = 0;
+
+        private void add(final int value) {
+            if(size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        private IntList intersect(final IntList other) {
+            final IntList result = new IntList();
+            int i = 0;
+            int j = 0;
+            while(i < size && j < other.size) {
+                if(data[i] < other.data[j]) {
+                    i++;
+                } else if(data[i] > other.data[j]) {
+                    j++;
+                } else {
+                    result.add(data[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package org.roux.gui.dialog;
 
-import javafx.beans.Observable;
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.When;
+import javafx.concurrent.Worker;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -14,17 +17,18 @@ import org.roux.application.ApplicationLibrary;
 import org.roux.gui.window.DialogLayout;
 import org.roux.gui.window.WindowLayout;
 import org.roux.utils.FileManager;
+import org.roux.utils.ScannerTool;
 import org.roux.utils.Utils;
 
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public class ScanResultDialog extends DialogLayout {
 
     private final static int WINDOW_WIDTH = 720;
-    private final static int WINDOW_HEIGHT = 560;
+    private final static int WINDOW_HEIGHT = 640;
 
     private final ObservableList<Path> keepListObservable = FXCollections.observableArrayList();
     private final ObservableList<Path> blacklistObservable = FXCollections.observableArrayList();
@@ -32,8 +36,25 @@ public class ScanResultDialog extends DialogLayout {
     private final ListView<Path> blacklistView;
     private final Label warningIdenticalNames;
 
+    private final Label fileScanningStatus = new Label();
+    private final ProgressBar progressBar = new ProgressBar();
+    private final Label progressPercent = new Label("");
+    private final Label throughput = new Label("");
+    private final Button stopButton;
+
+    private ScannerTool scannerTool;
+    private final List<Path> scannedPaths = new ArrayList<>();
+    private boolean isReviewing = false;
+    private boolean isConfirmed = false;
+
+    private final Map<Path, String> nameByPath = new HashMap<>();
+    private final Map<String, List<Path>> pathsByName = new HashMap<>();
+    private final Set<String> collidingNames = new TreeSet<>();
+
     public ScanResultDialog(final Stage owner) {
         super(owner);
+        stopButton = Utils.makeTextButton("Stop", event -> scannerTool.cancel());
+        final HBox progress = buildProgress();
         keepView = buildResultView();
         blacklistView = buildBlacklistView();
         final HBox resultButtons = buildResultButtons();
@@ -42,6 +63,9 @@ public class ScanResultDialog extends DialogLayout {
         warningIdenticalNames.setFont(Font.font(16));
         warningIdenticalNames.setStyle("-fx-text-fill: red;");
         final VBox root = buildRoot(WINDOW_WIDTH, WINDOW_HEIGHT,
+                                    fileScanningStatus,
+                                    progress,
+                                    throughput,
                                     new Label("Keep"),
                                     keepView,
                                     warningIdenticalNames,
@@ -53,29 +77,69 @@ public class ScanResultDialog extends DialogLayout {
 
     @Override
     protected void onConfirmAction() {
-        keepListObservable.forEach(path -> {
-            if(ApplicationLibrary.isBlacklisted(path))
-                FileManager.getBlacklist().remove(path.toString());
-        });
-        blacklistObservable.forEach(path -> {
-            if(!ApplicationLibrary.isBlacklisted(path))
-                FileManager.getBlacklist().add(path.toString());
-        });
+        // Confirming while still scanning keeps what has been found so far
+        scannerTool.cancel();
+        isReviewing = false;
+        isConfirmed = true;
+        // Against the blacklist as it was, changed once for all
+        final List<String> removed = keepListObservable.stream()
+                .filter(ApplicationLibrary::isBlacklisted)
+                .map(Path::toString)
+                .collect(Collectors.toList());
+        final List<String> added = blacklistObservable.stream()
+                .filter(path -> !ApplicationLibrary.isBlacklisted(path))
+                .map(Path::toString)
+                .collect(Collectors.toList());
+        FileManager.updateBlacklist(added, removed);
         close();
     }
 
     @Override
     protected void onCancelAction() {
+        scannerTool.cancel();
+        isReviewing = false;
         keepListObservable.clear();
         blacklistObservable.clear();
         close();
     }
 
-    public Map<Path, Boolean> seeResultDialog(final List<Path> result,
-                                              final List<Path> blacklistedResult) {
-        keepListObservable.setAll(result);
-        blacklistObservable.setAll(blacklistedResult);
+    /**
+     * Runs the scan and shows its results while they are found, so they can be sorted out before
+     * the scan is over
+     *
+     * @param isNew tells which of the scanned executables are to be reviewed, the others are only
+     *              remembered in {@link #getScannedPaths()}
+     * @return the reviewed executables, mapped to whether they have been blacklisted, or null if
+     * the dialog has been cancelled
+     */
+    public Map<Path, Boolean> seeResultDialog(final ScannerTool scannerTool,
+                                              final Predicate<Path> isNew) {
+        this.scannerTool = scannerTool;
+        scannedPaths.clear();
+        keepListObservable.clear();
+        blacklistObservable.clear();
+        pathsByName.clear();
+        collidingNames.clear();
+        isReviewing = true;
+        isConfirmed = false;
+        scannerTool.setOnFound(batch -> {
+            // Late batches of a stopped scan may still come after the dialog is closed
+            if(!isReviewing) return;
+            scannedPaths.addAll(batch);
+            final Map<Boolean, List<Path>> newPathsByBlacklisted =
+                    ApplicationLibrary.partitionByBlacklist(batch.stream()
+                                                                    .filter(isNew)
+                                                                    .collect(Collectors.toList()));
+            keepListObservable.addAll(newPathsByBlacklisted.get(false));
+            blacklistObservable.addAll(newPathsByBlacklisted.get(true));
+        });
+        bindToWorker(scannerTool);
+        final Thread backgroundThread = new Thread(scannerTool);
+        backgroundThread.setDaemon(true);
+        backgroundThread.start();
         showAndWait();
+        if(!isConfirmed) return null;
+
         final Map<Path, Boolean> pathToValid = new HashMap<>();
         keepListObservable.forEach(path -> pathToValid.put(path, false));
         blacklistObservable.forEach(path -> pathToValid.put(path, true));
@@ -83,35 +147,110 @@ public class ScanResultDialog extends DialogLayout {
         return pathToValid;
     }
 
+    /**
+     * @return every executable the scan found before the dialog was closed, reviewed or not
+     */
+    public List<Path> getScannedPaths() {
+        return scannedPaths;
+    }
+
+    /**
+     * @return true if the scan went through every source folder
+     */
+    public boolean isScanComplete() {
+        return scannerTool.getState() == Worker.State.SUCCEEDED;
+    }
+
+    private HBox buildProgress() {
+        progressBar.prefWidthProperty().bind(Bindings.subtract(widthProperty(), 160));
+        final HBox progress = new HBox(10, progressBar, progressPercent, stopButton);
+        progress.setPadding(new Insets(0, 10, 0, 10));
+        progress.setPrefHeight(10);
+        progress.setAlignment(Pos.CENTER_LEFT);
+        return progress;
+    }
+
+    private void bindToWorker(final Worker<String> worker) {
+        fileScanningStatus.textProperty().bind(
+                new When(worker.totalWorkProperty().isEqualTo(-1))
+                        .then("Checking data . . .").otherwise(
+                        new When(worker.runningProperty().not())
+                                .then("Done").otherwise(worker.valueProperty().asString()))
+        );
+
+        progressBar.progressProperty().bind(worker.progressProperty());
+        progressPercent.textProperty().bind(
+                new When(worker.progressProperty().isEqualTo(-1))
+                        .then("0.0%")
+                        .otherwise(worker.progressProperty().multiply(100.0).asString("%.2f%%")));
+        throughput.textProperty().bind(worker.messageProperty());
+
+        stopButton.disableProperty().bind(worker.runningProperty().not());
+    }
+
     private ListView<Path> buildResultView() {
         final ListView<Path> listView = new ListView<>();
         listView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         listView.setItems(keepListObservable);
         listView.setPrefHeight(WindowLayout.WINDOW_MAXIMUM_HEIGHT);
         listView.getStyleClass().add("alternating-row-colors");
-        keepListObservable.addListener((Observable newValue) -> {
-            final List<Path> paths = (List<Path>) newValue;
-            for(int i = 0; i < paths.size() - 1; i++) {
-                final String name = ApplicationLibrary.deductName(paths.get(i));
-                for(int j = i + 1; j < paths.size(); j++) {
-                    if(ApplicationLibrary.deductName(paths.get(j)).equals(name)) {
-                        warningIdenticalNames.setVisible(true);
-                        warningIdenticalNames.setText(
-                                "WARNING : Multiple applications will share the same names");
-                        final Tooltip tooltip = new Tooltip(paths.get(i) + " & " + paths.get(j));
-                        warningIdenticalNames.setTooltip(tooltip);
-                        return;
-                    }
-                }
+        keepListObservable.addListener((ListChangeListener<Path>) change -> {
+            while(change.next()) {
+                if(change.wasPermutated() || change.wasUpdated()) continue;
+                change.getRemoved().forEach(this::removeName);
+                change.getAddedSubList().forEach(this::addName);
             }
-            warningIdenticalNames.setText("");
-            warningIdenticalNames.setVisible(false);
-            warningIdenticalNames.setTooltip(null);
+            updateWarning();
         });
 
         return listView;
     }
 
+    /*
+     * Names are deducted once per path, and the paths kept are grouped by name as they come and
+     * go, so that telling which names collide does not compare every pair again
+     */
+
+    private void addName(final Path path) {
+        final String name = nameByPath.computeIfAbsent(path, ApplicationLibrary::deductName);
+        final List<Path> paths = pathsByName.computeIfAbsent(name, key -> new ArrayList<>(1));
+        paths.add(path);
+        if(paths.size() > 1)
+            collidingNames.add(name);
+    }
+
+    private void removeName(final Path path) {
+        final String name = nameByPath.get(path);
+        final List<Path> paths = pathsByName.get(name);
+        if(paths == null) return;
+        paths.remove(path);
+        if(paths.size() < 2)
+            collidingNames.remove(name);
+        if(paths.isEmpty())
+            pathsByName.remove(name);
+    }
+
+    private void updateWarning() {
+        if(collidingNames.isEmpty()) {
+            warningIdenticalNames.setText("");
+            warningIdenticalNames.setVisible(false);
+            warningIdenticalNames.setTooltip(null);
+            return;
+        }
+        warningIdenticalNames.setVisible(true);
+        warningIdenticalNames.setText("WARNING : Multiple applications will share the same names ("
+                                              + collidingNames.size() + ")");
+        final StringBuilder groups = new StringBuilder();
+        for(final String name : collidingNames) {
+            if(groups.length() > 0) groups.append('\n');
+            groups.append(name).append(" : ");
+            groups.append(pathsByName.get(name).stream()
+                                  .map(Path::toString)
+                                  .collect(Collectors.joining(" & ")));
+        }
+        warningIdenticalNames.setTooltip(new Tooltip(groups.toString()));
+    }
+
     private ListView<Path> buildBlacklistView() {
         final ListView<Path> listView = new ListView<>();
         listView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
@@ -0,0 +1,100 @@
+package org.roux.gui.utils;
+
+import javafx.geometry.Point2D;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.MouseButton;
+import javafx.stage.Popup;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The results under the search field. A virtualized list : only the rows on screen have a cell,
+ * reused while typing and scrolling, new results merely replace the list's items.
+ */
+public class AutoCompletePopup extends Popup {
+
+    private static final double CELL_HEIGHT = 24;
+
+    private final ListView<String> listView = new ListView<>();
+    private final TextField owner;
+    private int visibleRows = 0;
+    // Tracked rather than asked to the list, which does not tell
+    private int firstVisibleRow = 0;
+
+    /**
+     * @param onPick called with the clicked result, before the popup hides
+     */
+    public AutoCompletePopup(final TextField owner, final Consumer<String> onPick) {
+        this.owner = owner;
+        listView.getStylesheets().add("style.css");
+        listView.setFixedCellSize(CELL_HEIGHT);
+        // The field keeps the focus, the keys are forwarded by it
+        listView.setFocusTraversable(false);
+        listView.setOnMouseClicked(event -> {
+            final String selected = getSelected();
+            if(event.getButton() == MouseButton.PRIMARY && selected != null) {
+                onPick.accept(selected);
+                hide();
+            }
+        });
+        getContent().add(listView);
+    }
+
+    /**
+     * @param visibleRows how many rows are shown at most, the others are reached by scrolling
+     */
+    public void setResults(final List<String> results, final int visibleRows) {
+        this.visibleRows = visibleRows;
+        firstVisibleRow = 0;
+        listView.getItems().setAll(results);
+        listView.setPrefHeight(Math.min(results.size(), visibleRows) * CELL_HEIGHT + 2);
+        listView.getSelectionModel().clearSelection();
+        listView.scrollTo(0);
+        if(!isShowing()) {
+            listView.setPrefWidth(owner.getPrefWidth());
+            final Point2D position = owner.localToScreen(0, owner.getHeight());
+            if(position != null)
+                show(owner, position.getX(), position.getY());
+        }
+    }
+
+    public void clear() {
+        listView.getItems().clear();
+    }
+
+    public void selectNext() {
+        move(1);
+    }
+
+    public void selectPrevious() {
+        move(-1);
+    }
+
+    /**
+     * @return the selected result, null if none
+     */
+    public String getSelected() {
+        return listView.getSelectionModel().getSelectedItem();
+    }
+
+    private void move(final int offset) {
+        final int size = listView.getItems().size();
+        if(size == 0) return;
+
+        final int current = listView.getSelectionModel().getSelectedIndex();
+        final int next = current < 0
+                ? (offset > 0 ? 0 : size - 1) : Math.floorMod(current + offset, size);
+        listView.getSelectionModel().select(next);
+        // Only scrolls when the selection leaves the visible rows
+        if(next < firstVisibleRow) {
+            firstVisibleRow = next;
+        } else if(next >= firstVisibleRow + visibleRows) {
+            firstVisibleRow = next - visibleRows + 1;
+        } else {
+            return;
+        }
+        listView.scrollTo(firstVisibleRow);
+    }
+}
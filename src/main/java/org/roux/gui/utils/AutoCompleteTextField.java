@@ -1,18 +1,13 @@
 package org.roux.gui.utils;
 
-import javafx.geometry.Side;
-import javafx.scene.control.CustomMenuItem;
-import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
-import org.roux.application.ApplicationLibrary;
+import org.roux.application.SearchIndex;
 import org.roux.gui.window.SearchWindow;
 import org.roux.utils.FileManager;
 
-import java.util.LinkedList;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.function.Consumer;
 
 /**
  * This class is a TextField which implements an "autocomplete" functionality, based on a supplied
@@ -22,42 +17,67 @@ import java.util.TreeSet;
  */
 public class AutoCompleteTextField extends TextField {
 
-    private final SortedSet<String> entries;
+    /**
+     * Results beyond the visible ones, reached by scrolling the popup
+     */
+    private static final int SCROLLABLE_PAGES = 5;
+
+    private final SearchWindow searchWindow;
+    private final SearchExecutor searchExecutor;
     private List<String> filteredEntries;
-    private final MaxSizedContextMenu entriesPopup;
+    private final AutoCompletePopup entriesPopup;
+    private boolean launchWhenSearched = false;
+    // Until the entries are loaded, typing only fills the field
+    private boolean ready = false;
 
-    public AutoCompleteTextField(final SearchWindow searchWindow,
-                                 final ApplicationLibrary applicationLibrary) {
+    public AutoCompleteTextField(final SearchWindow searchWindow) {
         super();
-        entries = new TreeSet<>();
-        entriesPopup = new MaxSizedContextMenu();
+        this.searchWindow = searchWindow;
+        searchExecutor = new SearchExecutor(
+                () -> FileManager.getConfiguration().getSearchDebounce());
+        entriesPopup = new AutoCompletePopup(this, result -> {
+            setText(result);
+            positionCaret(getText().length());
+        });
         entriesPopup.setOpacity(0.9);
         textProperty().addListener((observableValue, s, s2) -> {
             if(getText().length() == 0) {
-                //                entriesPopup.hide();
-                // !! CA MARCHE JE SAIS PAS POURQUOI MAIS TU TOUCHE PAS !!!
-                entriesPopup.getItems().clear();
-            } else {
-                filteredEntries = applicationLibrary.filter(entries, getText());
-                if(entries.size() > 0) {
-                    populatePopup(filteredEntries);
-                    if(!entriesPopup.isShowing()) {
-                        entriesPopup.setMinWidth(getPrefWidth());
-                        entriesPopup.show(AutoCompleteTextField.this, Side.BOTTOM, 0, 0);
-                    }
-                } else {
-                    entriesPopup.hide();
-                }
+                searchExecutor.cancel();
+                launchWhenSearched = false;
+                entriesPopup.clear();
+                entriesPopup.hide();
+            } else if(ready) {
+                search();
             }
         });
         setOnKeyPressed(ke -> {
+            final String selected = entriesPopup.isShowing() ? entriesPopup.getSelected() : null;
             final List<String> list = getFilteredEntries();
-            if(ke.getCode() == KeyCode.ENTER) {
-                if(list != null && !list.isEmpty()) {
+            if(ke.getCode() == KeyCode.DOWN || ke.getCode() == KeyCode.UP) {
+                if(entriesPopup.isShowing()) {
+                    if(ke.getCode() == KeyCode.DOWN) {
+                        entriesPopup.selectNext();
+                    } else {
+                        entriesPopup.selectPrevious();
+                    }
+                }
+                ke.consume();
+            } else if(ke.getCode() == KeyCode.ENTER) {
+                if(selected != null) {
+                    searchWindow.launchApplication(selected);
+                } else if(!ready) {
+                    // Launched once the entries are loaded and the text searched
+                    launchWhenSearched = getText().length() > 0;
+                } else if(searchExecutor.isPending()) {
+                    // Typed faster than the search, launch what the last keystroke finds
+                    launchWhenSearched = true;
+                } else if(list != null && !list.isEmpty()) {
                     searchWindow.launchApplication(list.get(0));
                 }
             } else if(ke.getCode() == KeyCode.TAB) {
-                if(list != null && !list.isEmpty()) {
+                if(selected != null) {
+                    setText(selected);
+                } else if(list != null && !list.isEmpty()) {
                     setText(list.get(0));
                 }
                 requestFocus();
@@ -68,26 +88,39 @@ public class AutoCompleteTextField extends TextField {
         focusedProperty().addListener((observable) -> entriesPopup.hide());
     }
 
-    public SortedSet<String> getEntries() { return entries; }
-
-    public List<String> getFilteredEntries() { return filteredEntries; }
-
-    private void populatePopup(final List<String> searchResult) {
-        final List<CustomMenuItem> menuItems = new LinkedList<>();
-        // If you'd like more entries, modify this line.
-        final int count = Math.min(searchResult.size(), FileManager.MAX_ENTRIES);
-        for(int i = 0; i < count; i++) {
-            final String result = searchResult.get(i);
-            final Label entryLabel = new Label(result);
-            final CustomMenuItem item = new CustomMenuItem(entryLabel, true);
-            item.setOnAction(actionEvent -> {
-                setText(result);
+    private void search() {
+        final int maxEntries = FileManager.getConfiguration().getMaxEntries();
+        searchExecutor.search(getText(), maxEntries * SCROLLABLE_PAGES, result -> {
+            filteredEntries = result;
+            if(launchWhenSearched) {
+                launchWhenSearched = false;
+                if(!result.isEmpty())
+                    searchWindow.launchApplication(result.get(0));
+            }
+            if(!result.isEmpty()) {
+                entriesPopup.setResults(result, maxEntries);
+            } else {
                 entriesPopup.hide();
-            });
-            menuItems.add(item);
-        }
-        entriesPopup.getItems().clear();
-        entriesPopup.getItems().addAll(menuItems);
+            }
+        });
+    }
+
+    /**
+     * To be called once the entries are queued : searches what was typed until then, and
+     * launches the first result if ENTER was pressed meanwhile
+     */
+    public void setReady() {
+        ready = true;
+        if(getText().length() > 0)
+            search();
+    }
 
+    /**
+     * Queues a change to the entries, see {@link SearchExecutor#update(Consumer)}
+     */
+    public void updateEntries(final Consumer<SearchIndex> change) {
+        searchExecutor.update(change);
     }
-}
\ No newline at end of file
+
+    public List<String> getFilteredEntries() { return filteredEntries; }
+}
@@ -0,0 +1,107 @@
+package org.roux.gui.utils;
+
+import javafx.application.Platform;
+import org.roux.application.ApplicationLibrary;
+import org.roux.application.SearchIndex;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the searches on a worker thread so that typing never waits on them. A new query cancels
+ * the one still waiting, and only the result of the latest query reaches the FX thread.
+ * <p>
+ * The search index belongs to the worker : changes to it are queued like the searches, in
+ * order, and carry copies of what they need, so the worker never reads the library itself.
+ * <p>
+ * The executor keeps what a task throws in a future nobody reads, so the tasks print it
+ * themselves.
+ */
+public class SearchExecutor {
+
+    private final ScheduledThreadPoolExecutor executor =
+            new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "search");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final SearchIndex index = new SearchIndex();
+    private final LongSupplier debounceMillis;
+
+    // FX thread only
+    private long requested = 0L;
+    private long delivered = 0L;
+    private Future<?> pending = null;
+    // Read by the worker to drop a query overtaken while it waited
+    private volatile long latest = 0L;
+
+    /**
+     * @param debounceMillis how long a query waits for the next keystroke before running, 0 to
+     *                       run right away, asked on each query
+     */
+    public SearchExecutor(final LongSupplier debounceMillis) {
+        this.debounceMillis = debounceMillis;
+        // Superseded queries leave the queue right away instead of when their delay is up
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Queues a change to the index, applied before any query made afterwards
+     */
+    public void update(final Consumer<SearchIndex> change) {
+        executor.execute(() -> {
+            try {
+                change.accept(index);
+            } catch(final RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Must be called from the FX thread, onResult is called back there with the result unless a
+     * newer query was made in the meantime
+     */
+    public void search(final String text, final int limit,
+                       final Consumer<List<String>> onResult) {
+        final long generation = ++requested;
+        latest = generation;
+        if(pending != null)
+            pending.cancel(false);
+        pending = executor.schedule(() -> {
+            if(generation != latest) return;
+
+            final List<String> result;
+            try {
+                result = ApplicationLibrary.filter(index, text, limit);
+            } catch(final RuntimeException e) {
+                e.printStackTrace();
+                return;
+            }
+            Platform.runLater(() -> {
+                if(generation != requested) return;
+                delivered = generation;
+                onResult.accept(result);
+            });
+        }, debounceMillis.getAsLong(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops the query in flight, if any, its result will not be delivered
+     */
+    public void cancel() {
+        latest = ++requested;
+        delivered = requested;
+        if(pending != null)
+            pending.cancel(false);
+    }
+
+    /**
+     * @return true while the result of the latest query has not been delivered
+     */
+    public boolean isPending() {
+        return delivered != requested;
+    }
+}
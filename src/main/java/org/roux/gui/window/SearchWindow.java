@@ -10,16 +10,14 @@ import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color;
 import org.roux.application.Application;
 import org.roux.application.ApplicationLibrary;
-import org.roux.gui.dialog.ScanDialog;
 import org.roux.gui.dialog.ScanResultDialog;
 import org.roux.gui.utils.AutoCompleteTextField;
+import org.roux.utils.ScannerTool;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static org.roux.utils.Utils.makeGraphicButton;
 import static org.roux.utils.Utils.makeVerticalSeparator;
@@ -30,12 +28,17 @@ public class SearchWindow extends UndecoratedWindow {
     public static final int APP_HEIGHT = FIELD_WIDTH / 12;
     public static final int BUTTON_SIZE = APP_HEIGHT;
 
-    private final ApplicationLibrary applicationLibrary;
+    // Null until loaded, the buttons needing it are disabled until then
+    private ApplicationLibrary applicationLibrary = null;
     private OptionWindow optionWindow;
     private AutoCompleteTextField textField;
+    private Button updateButton;
+    private Button optionButton;
 
-    public SearchWindow(final ApplicationLibrary applicationLibrary) {
-        this.applicationLibrary = applicationLibrary;
+    /**
+     * Shows right away, the library comes later through {@link #setLibrary}
+     */
+    public SearchWindow() {
         final Parent root = buildRoot();
         setRoot(root);
 
@@ -44,6 +47,33 @@ public class SearchWindow extends UndecoratedWindow {
         setOnShowing(event -> textField.requestFocus());
     }
 
+    /**
+     * Hands the loaded library to the window : the field gets its entries then searches what was
+     * typed meanwhile, and the buttons are enabled
+     *
+     * @param onIndexed called on the search thread once the entries are in
+     */
+    public void setLibrary(final ApplicationLibrary applicationLibrary,
+                           final Runnable onIndexed) {
+        this.applicationLibrary = applicationLibrary;
+        // The entries are searched on another thread, they get copies of the library's data
+        final List<String> names = applicationLibrary.getNames(false);
+        final Map<String, Double> frecencies = applicationLibrary.getFrecencies(false);
+        final Map<String, List<String>> namesByKeyword = applicationLibrary.getNamesByKeyword();
+        textField.updateEntries(entries -> {
+            entries.addAll(names);
+            frecencies.forEach(entries::setFrecency);
+            entries.setNamesByKeyword(namesByKeyword);
+            onIndexed.run();
+        });
+        // Then only what changes
+        applicationLibrary.addChangeListener(
+                change -> textField.updateEntries(change::applyTo));
+        textField.setReady();
+        updateButton.setDisable(false);
+        optionButton.setDisable(false);
+    }
+
     @Override
     protected void onConfirmAction() {
         //@todo see if there's anything logical by pushing ENTER here
@@ -64,6 +94,7 @@ public class SearchWindow extends UndecoratedWindow {
                     final ProcessBuilder processBuilder =
                             new ProcessBuilder("cmd", "/c", path.toString());
                     processBuilder.start();
+                    applicationLibrary.recordLaunch(application, System.currentTimeMillis());
                 } catch(final IOException e) {
                     e.printStackTrace();
                 }
@@ -76,43 +107,30 @@ public class SearchWindow extends UndecoratedWindow {
     }
 
     private void scan() {
-        final ScanDialog scanDialog = new ScanDialog(this);
+        final ScannerTool scannerTool = new ScannerTool();
         final ScanResultDialog scanResultDialog = new ScanResultDialog(this);
-        final Optional<List<Path>> result = scanDialog.openDialog();
-        if(result.isPresent()) {
-            final List<Path> scanResult = result.get();
-            final List<Path> filteredResult = scanResult
-                    .stream()
-                    .filter(path -> applicationLibrary.findSamePathApplication(path) == null)
-                    .filter(path -> !ApplicationLibrary.isBlacklisted(path))
-                    .collect(Collectors.toList());
-            final List<Path> filteredBlacklistedResult = scanResult
-                    .stream()
-                    .filter(path -> applicationLibrary.findSamePathApplication(path) == null)
-                    .filter(ApplicationLibrary::isBlacklisted)
-                    .collect(Collectors.toList());
-            final Map<Path, Boolean> isBlacklistedByExecutable =
-                    scanResultDialog.seeResultDialog(filteredResult, filteredBlacklistedResult);
-            scanResult.removeIf(path -> applicationLibrary.findSamePathApplication(path) == null);
-            for(final Path path : scanResult) {
-                isBlacklistedByExecutable.computeIfAbsent(
-                        path,
-                        isKept -> applicationLibrary.findSamePathApplication(path).isBlacklisted());
-            }
-            applicationLibrary.updateLibrary(isBlacklistedByExecutable);
-            textField.getEntries().clear();
-            textField.getEntries().addAll(applicationLibrary.getNames(false));
+        final Map<Path, Boolean> isBlacklistedByExecutable = scanResultDialog.seeResultDialog(
+                scannerTool, path -> applicationLibrary.findSamePathApplication(path) == null);
+        if(isBlacklistedByExecutable == null) return;
+
+        for(final Path path : scanResultDialog.getScannedPaths()) {
+            final Application application = applicationLibrary.findSamePathApplication(path);
+            if(application != null)
+                isBlacklistedByExecutable.putIfAbsent(path, application.isBlacklisted());
         }
+        // A stopped scan did not see everything, what it missed is not gone for all that
+        applicationLibrary.updateLibrary(isBlacklistedByExecutable,
+                                         !scanResultDialog.isScanComplete());
     }
 
     private Parent buildRoot() {
         textField = makeField();
-        final Button updateButton =
+        updateButton =
                 makeGraphicButton("update-icon.png", SearchWindow.BUTTON_SIZE, event -> {
                     scan();
                     event.consume();
                 });
-        final Button optionButton =
+        optionButton =
                 makeGraphicButton("option-icon.png", SearchWindow.BUTTON_SIZE, event -> {
                     if(optionWindow == null)
                         optionWindow = new OptionWindow(this, applicationLibrary);
@@ -120,6 +138,8 @@ public class SearchWindow extends UndecoratedWindow {
                     setOpacity(0);
                     event.consume();
                 });
+        updateButton.setDisable(true);
+        optionButton.setDisable(true);
 
         final HBox root = new HBox(updateButton, makeVerticalSeparator(),
                                    textField, makeVerticalSeparator(),
@@ -132,15 +152,9 @@ public class SearchWindow extends UndecoratedWindow {
     }
 
     private AutoCompleteTextField makeField() {
-        final AutoCompleteTextField textField =
-                new AutoCompleteTextField(this, applicationLibrary);
+        final AutoCompleteTextField textField = new AutoCompleteTextField(this);
         textField.setPromptText("Find an app");
         textField.setPrefSize(FIELD_WIDTH, APP_HEIGHT);
-        textField.getEntries().addAll(applicationLibrary.getNames(false));
-        applicationLibrary.addListener(c -> {
-            textField.getEntries().clear();
-            textField.getEntries().addAll(applicationLibrary.getNames(false));
-        });
         return textField;
     }
 
@@ -0,0 +1,213 @@
+package org.roux.utils;
+
+import org.roux.application.Application;
+import org.roux.utils.DataFile.Section;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Writes data.json again once the edits stop for a while, on a thread of its own : a burst of
+ * edits makes a single write, and the journal keeps them meanwhile.
+ * <p>
+ * Each section of the file is kept serialized from one write to the next, only the sections
+ * marked dirty since are serialized again.
+ */
+public class AutosaveScheduler {
+
+    private static final long QUIET_PERIOD_MILLIS = 2000;
+    // Edits which never stop are saved anyway after that long
+    private static final long MAX_DELAY_MILLIS = 30000;
+    // A failed save is tried again after the quiet period, doubled at each failure up to that
+    private static final long MAX_RETRY_DELAY_MILLIS = 5 * 60 * 1000;
+
+    private final ScheduledThreadPoolExecutor executor =
+            new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "autosave");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+    private final Path json;
+    private final Journal journal;
+    private final Supplier<Configuration> configuration;
+    private final Supplier<? extends Collection<Application>> applications;
+    // Autosave thread only
+    private final Map<Section, String> fragments = new EnumMap<>(Section.class);
+    private int failures = 0;
+
+    // Guarded by this
+    private final EnumSet<Section> dirty = EnumSet.noneOf(Section.class);
+    private long dirtySince = 0L;
+    private ScheduledFuture<?> pending = null;
+
+    // Written by the autosave thread only
+    private volatile int saveCount = 0;
+    private volatile long lastLatencyMillis = 0L;
+    private volatile long lastDurationMillis = 0L;
+    private volatile long lastBytesWritten = 0L;
+    private volatile long totalBytesWritten = 0L;
+
+    /**
+     * @param configuration and applications give the current state, which a save writes
+     */
+    public AutosaveScheduler(final Path json, final Journal journal,
+                             final Supplier<Configuration> configuration,
+                             final Supplier<? extends Collection<Application>> applications) {
+        this.json = json;
+        this.journal = journal;
+        this.configuration = configuration;
+        this.applications = applications;
+        executor.setRemoveOnCancelPolicy(true);
+        // What the previous run left in the journal goes in data.json soon
+        if(journal.hasChanges())
+            markDirty(Section.values());
+    }
+
+    /**
+     * Schedules a save after the quiet period, pushing back the one already scheduled. Must be
+     * called before the change goes in the journal, so that a save taking the journal line also
+     * serializes the section again.
+     */
+    public synchronized void markDirty(final Section... sections) {
+        // Closed, the last save is done or under way
+        if(executor.isShutdown()) return;
+
+        final long now = System.currentTimeMillis();
+        if(dirty.isEmpty())
+            dirtySince = now;
+        dirty.addAll(Arrays.asList(sections));
+        if(pending != null)
+            pending.cancel(false);
+        final long delay = Math.max(0, Math.min(QUIET_PERIOD_MILLIS,
+                                                dirtySince + MAX_DELAY_MILLIS - now));
+        pending = executor.schedule(this::save, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves what is left to save then stops, waiting for the write to be done
+     */
+    public void close() {
+        synchronized(this) {
+            if(pending != null)
+                pending.cancel(false);
+        }
+        executor.execute(this::save);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    private void save() {
+        final State state = journal.checkpoint(this::takeState);
+        if(state == null) return;
+
+        final long start = System.currentTimeMillis();
+        try {
+            for(final Section section : Section.values()) {
+                if(state.sections.contains(section) || !fragments.containsKey(section)) {
+                    final StringWriter fragment = new StringWriter();
+                    DataFile.writeSection(fragment, section, state.configuration,
+                                          state.applications);
+                    fragments.put(section, fragment.toString());
+                }
+            }
+            DataFile.write(json, state.configuration, fragments);
+            final long snapshotBytes =
+                    DataSnapshot.write(json, state.configuration, state.applications);
+            journal.discardCheckpoint();
+            failures = 0;
+
+            final long end = System.currentTimeMillis();
+            final long bytes = Files.size(json) + snapshotBytes;
+            saveCount++;
+            lastLatencyMillis = end - state.since;
+            lastDurationMillis = end - start;
+            lastBytesWritten = bytes;
+            totalBytesWritten += bytes;
+            System.out.println("Autosave of " + state.sections + " : " + bytes + " bytes in "
+                                       + lastDurationMillis + " ms, " + lastLatencyMillis
+                                       + " ms after the first edit");
+        } catch(final IOException e) {
+            // The journal still holds the changes, they are saved on the next try
+            e.printStackTrace();
+            failures++;
+            final long delay = Math.min(MAX_RETRY_DELAY_MILLIS,
+                                        QUIET_PERIOD_MILLIS << Math.min(failures - 1, 8));
+            synchronized(this) {
+                if(dirty.isEmpty())
+                    dirtySince = state.since;
+                dirty.addAll(state.sections);
+                // Unless an edit came meanwhile and scheduled one already
+                if(pending == null && !executor.isShutdown())
+                    pending = executor.schedule(this::save, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * @return what to save, null when nothing is dirty
+     */
+    private synchronized State takeState() {
+        pending = null;
+        if(dirty.isEmpty()) return null;
+
+        final State state = new State(configuration.get(), applications.get(),
+                                      EnumSet.copyOf(dirty), dirtySince);
+        dirty.clear();
+        return state;
+    }
+
+    public int getSaveCount() {
+        return saveCount;
+    }
+
+    /**
+     * @return how long the last save came after the first edit it holds
+     */
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    public long getLastDurationMillis() {
+        return lastDurationMillis;
+    }
+
+    /**
+     * @return what the last save wrote, data.json and its snapshot
+     */
+    public long getLastBytesWritten() {
+        return lastBytesWritten;
+    }
+
+    public long getTotalBytesWritten() {
+        return totalBytesWritten;
+    }
+
+    private static class State {
+        private final Configuration configuration;
+        private final Collection<Application> applications;
+        private final Set<Section> sections;
+        private final long since;
+
+        private State(final Configuration configuration,
+                      final Collection<Application> applications, final Set<Section> sections,
+                      final long since) {
+            this.configuration = configuration;
+            this.applications = applications;
+            this.sections = sections;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.roux.utils;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton telling whether a text contains any of the ban words, reading the text
+ * only once whatever the number of words.
+ * <p>
+ * Built once per ban word list, immutable afterwards so scanner threads can share it.
+ */
+public class BanWordMatcher {
+
+    private static final int ROOT = 0;
+
+    // Node i has transitions labels[i][k] -> targets[i][k], labels sorted for binary search
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] failures;
+    private final boolean[] isOutput;
+    private final boolean matchesEverything;
+
+    private BanWordMatcher(final char[][] labels, final int[][] targets, final int[] failures,
+                           final boolean[] isOutput, final boolean matchesEverything) {
+        this.labels = labels;
+        this.targets = targets;
+        this.failures = failures;
+        this.isOutput = isOutput;
+        this.matchesEverything = matchesEverything;
+    }
+
+    public static BanWordMatcher compile(final Collection<String> words) {
+        final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        final List<Boolean> terminals = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminals.add(false);
+        boolean matchesEverything = false;
+        for(final String word : words) {
+            // Like String.contains, an empty word is found everywhere
+            if(word.isEmpty()) matchesEverything = true;
+
+            int node = ROOT;
+            for(int i = 0; i < word.length(); i++) {
+                final Integer next = trie.get(node).get(word.charAt(i));
+                if(next != null) {
+                    node = next;
+                } else {
+                    trie.add(new TreeMap<>());
+                    terminals.add(false);
+                    trie.get(node).put(word.charAt(i), trie.size() - 1);
+                    node = trie.size() - 1;
+                }
+            }
+            terminals.set(node, true);
+        }
+
+        final int size = trie.size();
+        final char[][] labels = new char[size][];
+        final int[][] targets = new int[size][];
+        for(int node = 0; node < size; node++) {
+            final TreeMap<Character, Integer> transitions = trie.get(node);
+            labels[node] = new char[transitions.size()];
+            targets[node] = new int[transitions.size()];
+            int k = 0;
+            for(final Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                labels[node][k] = transition.getKey();
+                targets[node][k] = transition.getValue();
+                k++;
+            }
+        }
+
+        // Breadth first, so a node's failure is always computed before its children's
+        final int[] failures = new int[size];
+        final boolean[] isOutput = new boolean[size];
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for(final int child : targets[ROOT]) {
+            failures[child] = ROOT;
+            isOutput[child] = terminals.get(child);
+            queue.add(child);
+        }
+        while(!queue.isEmpty()) {
+            final int node = queue.poll();
+            for(int k = 0; k < labels[node].length; k++) {
+                final char label = labels[node][k];
+                final int child = targets[node][k];
+                int failure = failures[node];
+                int next;
+                while((next = transition(labels, targets, failure, label)) < 0
+                        && failure != ROOT) {
+                    failure = failures[failure];
+                }
+                failures[child] = next >= 0 ? next : ROOT;
+                isOutput[child] = terminals.get(child) || isOutput[failures[child]];
+                queue.add(child);
+            }
+        }
+        return new BanWordMatcher(labels, targets, failures, isOutput, matchesEverything);
+    }
+
+    /**
+     * @return true if at least one of the words appears in the text
+     */
+    public boolean matches(final CharSequence text) {
+        if(matchesEverything) return true;
+
+        int node = ROOT;
+        for(int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int next;
+            while((next = transition(labels, targets, node, c)) < 0 && node != ROOT) {
+                node = failures[node];
+            }
+            node = next >= 0 ? next : ROOT;
+            if(isOutput[node]) return true;
+        }
+        return false;
+    }
+
+    private static int transition(final char[][] labels, final int[][] targets,
+                                  final int node, final char c) {
+        final int k = Arrays.binarySearch(labels[node], c);
+        return k >= 0 ? targets[node][k] : -1;
+    }
+}
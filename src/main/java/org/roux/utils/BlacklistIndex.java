@@ -0,0 +1,140 @@
+package org.roux.utils;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Trie of the blacklisted paths, one level per path segment. Telling whether a path lies under a
+ * blacklisted entry only walks down as many levels as the path is deep, however long the
+ * blacklist is.
+ * <p>
+ * Never changes once built, so that it can be read from any thread : adding or removing an entry
+ * makes a new index, which only copies the nodes along the entry's path and shares the others.
+ */
+public class BlacklistIndex {
+
+    private final Node root;
+
+    public BlacklistIndex(final Collection<Path> paths) {
+        root = new Node();
+        // Nodes not shared yet, filled in place
+        for(final Path path : paths) {
+            Node node = root;
+            for(final Path segment : segments(path)) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            // Counted, the same entry can be in the blacklist more than once
+            node.entries++;
+        }
+    }
+
+    private BlacklistIndex(final Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @return a new index with the path added
+     */
+    public BlacklistIndex add(final Path path) {
+        return new BlacklistIndex(add(root, segments(path), 0));
+    }
+
+    /**
+     * @return a new index with the path removed once, this one if it was not there
+     */
+    public BlacklistIndex remove(final Path path) {
+        final Node removed = remove(root, segments(path), 0);
+        return removed == root ? this : new BlacklistIndex(removed);
+    }
+
+    private static Node add(final Node node, final List<Path> segments, final int depth) {
+        final Node copy = node.copy();
+        if(depth == segments.size()) {
+            copy.entries++;
+        } else {
+            final Node child = node.children.get(segments.get(depth));
+            copy.children.put(segments.get(depth),
+                              add(child != null ? child : new Node(), segments, depth + 1));
+        }
+        return copy;
+    }
+
+    /**
+     * @return the node less the path, or the same node if the path is not under it
+     */
+    private static Node remove(final Node node, final List<Path> segments, final int depth) {
+        if(depth == segments.size()) {
+            if(node.entries == 0) return node;
+            final Node copy = node.copy();
+            copy.entries--;
+            return copy;
+        }
+        final Path segment = segments.get(depth);
+        final Node child = node.children.get(segment);
+        if(child == null) return node;
+        final Node removed = remove(child, segments, depth + 1);
+        if(removed == child) return node;
+
+        final Node copy = node.copy();
+        // Prune the branches left empty
+        if(removed.isEmpty()) {
+            copy.children.remove(segment);
+        } else {
+            copy.children.put(segment, removed);
+        }
+        return copy;
+    }
+
+    /**
+     * @return true if the path, or one of its parents, is blacklisted
+     */
+    public boolean contains(final Path path) {
+        Node node = root;
+        if(node.entries > 0) return true;
+        for(final Path segment : segments(path)) {
+            node = node.children.get(segment);
+            if(node == null) return false;
+            if(node.entries > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the given paths split between blacklisted ones (true) and the others (false)
+     */
+    public Map<Boolean, List<Path>> partition(final Collection<Path> paths) {
+        final Map<Boolean, List<Path>> partition = new HashMap<>();
+        partition.put(true, new ArrayList<>());
+        partition.put(false, new ArrayList<>());
+        for(final Path path : paths) {
+            partition.get(contains(path)).add(path);
+        }
+        return partition;
+    }
+
+    private static List<Path> segments(final Path path) {
+        final List<Path> segments = new ArrayList<>(path.getNameCount() + 1);
+        if(path.getRoot() != null)
+            segments.add(path.getRoot());
+        for(final Path name : path) {
+            segments.add(name);
+        }
+        return segments;
+    }
+
+    private static class Node {
+        private final Map<Path, Node> children = new HashMap<>();
+        private int entries = 0;
+
+        private Node copy() {
+            final Node copy = new Node();
+            copy.children.putAll(children);
+            copy.entries = entries;
+            return copy;
+        }
+
+        private boolean isEmpty() {
+            return entries == 0 && children.isEmpty();
+        }
+    }
+}
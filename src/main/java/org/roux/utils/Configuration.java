@@ -0,0 +1,235 @@
+package org.roux.utils;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * One version of the settings of data.json. Never changes once built : a change makes a new
+ * version, so a scan or a save can read one from any thread and see it whole.
+ * <p>
+ * The matchers and the blacklist index are derived from the lists on first use and belong to
+ * their version, they are never updated in place either. A new version keeps the ones whose
+ * lists did not change, and a blacklist change derives the new version's index from this one's
+ * when it is built already.
+ */
+public class Configuration {
+
+    private final long version;
+    private final List<String> folders;
+    private final List<String> executables;
+    private final List<String> blacklist;
+    private final List<String> banWordFolders;
+    private final List<String> banWordExecutables;
+    private final int maxEntries;
+    private final int scanParallelism;
+    private final boolean watchFolders;
+    private final boolean fuzzySearch;
+    private final int searchDebounce;
+
+    // Racing threads may build them twice, to the same result
+    private volatile BanWordMatcher banWordFoldersMatcher = null;
+    private volatile BanWordMatcher banWordExecutablesMatcher = null;
+    private volatile BlacklistIndex blacklistIndex = null;
+
+    public Configuration(final long version, final Collection<String> folders,
+                         final Collection<String> executables,
+                         final Collection<String> blacklist,
+                         final Collection<String> banWordFolders,
+                         final Collection<String> banWordExecutables, final int maxEntries,
+                         final int scanParallelism, final boolean watchFolders,
+                         final boolean fuzzySearch, final int searchDebounce) {
+        this.version = version;
+        this.folders = copyOf(folders);
+        this.executables = copyOf(executables);
+        this.blacklist = copyOf(blacklist);
+        this.banWordFolders = copyOf(banWordFolders);
+        this.banWordExecutables = copyOf(banWordExecutables);
+        this.maxEntries = maxEntries;
+        this.scanParallelism = scanParallelism;
+        this.watchFolders = watchFolders;
+        this.fuzzySearch = fuzzySearch;
+        this.searchDebounce = searchDebounce;
+    }
+
+    public Configuration withFolders(final Collection<String> folders) {
+        return withDerived(new Configuration(
+                version + 1, folders, executables, blacklist, banWordFolders, banWordExecutables,
+                maxEntries, scanParallelism, watchFolders, fuzzySearch, searchDebounce));
+    }
+
+    public Configuration withExecutables(final Collection<String> executables) {
+        return withDerived(new Configuration(
+                version + 1, folders, executables, blacklist, banWordFolders, banWordExecutables,
+                maxEntries, scanParallelism, watchFolders, fuzzySearch, searchDebounce));
+    }
+
+    public Configuration withBlacklist(final Collection<String> blacklist) {
+        return withDerived(new Configuration(
+                version + 1, folders, executables, blacklist, banWordFolders, banWordExecutables,
+                maxEntries, scanParallelism, watchFolders, fuzzySearch, searchDebounce));
+    }
+
+    /**
+     * @return a new version with the removed entries taken out, every time they appear, then the
+     * added ones in
+     */
+    public Configuration withBlacklist(final Collection<String> added,
+                                       final Collection<String> removed) {
+        final List<String> blacklist = new ArrayList<>(this.blacklist);
+        blacklist.removeAll(removed);
+        blacklist.addAll(added);
+        final Configuration configuration = withBlacklist(blacklist);
+
+        BlacklistIndex index = blacklistIndex;
+        if(index != null) {
+            final Set<String> removedEntries = new HashSet<>(removed);
+            for(final String entry : this.blacklist) {
+                final Path path = removedEntries.contains(entry) ? toPath(entry) : null;
+                if(path != null)
+                    index = index.remove(path);
+            }
+            for(final String entry : added) {
+                final Path path = entry != null ? toPath(entry) : null;
+                if(path != null)
+                    index = index.add(path);
+            }
+            configuration.blacklistIndex = index;
+        }
+        return configuration;
+    }
+
+    public Configuration withBanWordFolders(final Collection<String> banWordFolders) {
+        return withDerived(new Configuration(
+                version + 1, folders, executables, blacklist, banWordFolders, banWordExecutables,
+                maxEntries, scanParallelism, watchFolders, fuzzySearch, searchDebounce));
+    }
+
+    public Configuration withBanWordExecutables(final Collection<String> banWordExecutables) {
+        return withDerived(new Configuration(
+                version + 1, folders, executables, blacklist, banWordFolders, banWordExecutables,
+                maxEntries, scanParallelism, watchFolders, fuzzySearch, searchDebounce));
+    }
+
+    /**
+     * Hands the matchers and the index built for this version down to the next one, when what
+     * they are derived from is the same
+     */
+    private Configuration withDerived(final Configuration configuration) {
+        if(configuration.banWordFolders.equals(banWordFolders))
+            configuration.banWordFoldersMatcher = banWordFoldersMatcher;
+        if(configuration.banWordExecutables.equals(banWordExecutables))
+            configuration.banWordExecutablesMatcher = banWordExecutablesMatcher;
+        if(configuration.blacklist.equals(blacklist))
+            configuration.blacklistIndex = blacklistIndex;
+        return configuration;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getFolders() {
+        return folders;
+    }
+
+    /**
+     * @return the source folders which exist, as paths
+     */
+    public List<Path> getSourceFolders() {
+        return folders.stream()
+                .map(folder -> Paths.get(folder))
+                .filter(path -> path.toFile().isDirectory())
+                .collect(Collectors.toList());
+    }
+
+    public List<String> getExecutables() {
+        return executables;
+    }
+
+    public List<String> getBlacklist() {
+        return blacklist;
+    }
+
+    public List<String> getBanWordFolders() {
+        return banWordFolders;
+    }
+
+    public List<String> getBanWordExecutables() {
+        return banWordExecutables;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    public boolean isWatchFolders() {
+        return watchFolders;
+    }
+
+    public boolean isFuzzySearch() {
+        return fuzzySearch;
+    }
+
+    public int getSearchDebounce() {
+        return searchDebounce;
+    }
+
+    public boolean folderContainsBanWord(final Path folder) {
+        BanWordMatcher matcher = banWordFoldersMatcher;
+        if(matcher == null)
+            banWordFoldersMatcher = matcher = BanWordMatcher.compile(banWordFolders);
+        return matcher.matches(folder.toString());
+    }
+
+    public boolean executableContainsBanWord(final Path executable) {
+        BanWordMatcher matcher = banWordExecutablesMatcher;
+        if(matcher == null)
+            banWordExecutablesMatcher = matcher = BanWordMatcher.compile(banWordExecutables);
+        return matcher.matches(executable.getFileName().toString());
+    }
+
+    /**
+     * @return the index of this version's blacklist, to be read only
+     */
+    public BlacklistIndex getBlacklistIndex() {
+        BlacklistIndex index = blacklistIndex;
+        if(index == null)
+            blacklistIndex = index = new BlacklistIndex(blacklist.stream()
+                                                                .map(Configuration::toPath)
+                                                                .filter(Objects::nonNull)
+                                                                .collect(Collectors.toList()));
+        return index;
+    }
+
+    /**
+     * @return the blacklist entry as a path, null if it is not one : such an entry, only found in
+     * a hand-edited data.json, blacklists nothing
+     */
+    private static Path toPath(final String entry) {
+        try {
+            return Paths.get(entry);
+        } catch(final InvalidPathException e) {
+            System.out.println("failed : " + entry);
+            return null;
+        }
+    }
+
+    /**
+     * A null entry, only found in a hand-edited data.json, means nothing and is left out
+     */
+    private static List<String> copyOf(final Collection<String> list) {
+        return list.stream().filter(Objects::nonNull).collect(Collectors.toUnmodifiableList());
+    }
+}
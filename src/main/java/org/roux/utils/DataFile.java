@@ -0,0 +1,425 @@
+package org.roux.utils;
+
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.roux.application.Application;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Reads and writes data.json as a stream : the applications are decoded straight into
+ * {@link Application}s and encoded straight from them, without a tree of maps in between.
+ * <p>
+ * The file keeps its layout, the settings at the top level, scalars or lists of strings, and the
+ * applications as an array of objects.
+ */
+public class DataFile {
+
+    // Lists the paths of the applications removed, in a change
+    private static final String REMOVED = "removed";
+
+    private final Map<String, Object> settings;
+    private final List<Application> applications;
+
+    private DataFile() {
+        this(new HashMap<>(), new ArrayList<>());
+    }
+
+    /**
+     * @param settings the settings as the parser gives them, numbers as longs
+     */
+    DataFile(final Map<String, Object> settings, final List<Application> applications) {
+        this.settings = settings;
+        this.applications = applications;
+    }
+
+    public static DataFile read(final Reader reader) throws IOException, ParseException {
+        final DataFile dataFile = new DataFile();
+        new JSONParser().parse(reader, dataFile.new Handler());
+        return dataFile;
+    }
+
+    /**
+     * @return the value of a top level scalar setting, null if missing
+     */
+    public Object getSetting(final String name) {
+        return settings.get(name);
+    }
+
+    /**
+     * @return a copy of a top level list of strings, empty if missing, without its null entries
+     */
+    public List<String> getList(final String name) {
+        final Object list = settings.get(name);
+        final List<String> strings = new ArrayList<>();
+        if(list instanceof List) {
+            for(final Object element : (List<?>) list) {
+                if(element != null)
+                    strings.add(element.toString());
+            }
+        }
+        return strings;
+    }
+
+    public List<Application> getApplications() {
+        return applications;
+    }
+
+    /**
+     * Brings in the changes of the journal, in order : their settings replace these ones, their
+     * applications replace the ones with the same path or are added, and the paths they list as
+     * removed go away
+     */
+    public void apply(final List<DataFile> changes) {
+        final Map<Path, Application> applicationByPath = new LinkedHashMap<>();
+        applications.forEach(application -> applicationByPath.put(
+                application.getExecutablePath(), application));
+        for(final DataFile change : changes) {
+            change.settings.forEach((key, value) -> {
+                if(!REMOVED.equals(key)) settings.put(key, value);
+            });
+            change.getList(REMOVED).forEach(path -> applicationByPath.remove(Paths.get(path)));
+            change.applications.forEach(application -> applicationByPath.put(
+                    application.getExecutablePath(), application));
+        }
+        applications.clear();
+        applications.addAll(applicationByPath.values());
+    }
+
+    /**
+     * Writes next to the file then moves it in place, a crash while writing leaves the previous
+     * one whole
+     */
+    public static void write(final Path file, final Configuration configuration,
+                             final Collection<Application> applications) throws IOException {
+        writeAtomically(file, writer -> write(writer, configuration, applications));
+    }
+
+    /**
+     * Like {@link #write(Path, Configuration, Collection)}, from the sections as
+     * {@link #writeSection} wrote them
+     */
+    public static void write(final Path file, final Configuration configuration,
+                             final Map<Section, String> sections) throws IOException {
+        writeAtomically(file, writer -> {
+            writeHeader(writer, configuration);
+            for(final Section section : Section.values()) {
+                writer.write(sections.get(section));
+            }
+            writer.write('}');
+        });
+    }
+
+    public static void write(final Writer writer, final Configuration configuration,
+                             final Collection<Application> applications) throws IOException {
+        writeHeader(writer, configuration);
+        for(final Section section : Section.values()) {
+            writeSection(writer, section, configuration, applications);
+        }
+        writer.write('}');
+    }
+
+    private static void writeAtomically(final Path file, final Content content)
+            throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try(final Writer writer = Files.newBufferedWriter(temporary, Charset.defaultCharset())) {
+            content.writeTo(writer);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens the file with the settings which cannot be edited while running, a few numbers
+     */
+    private static void writeHeader(final Writer writer, final Configuration configuration)
+            throws IOException {
+        writer.write('{');
+        writeEntry(writer, "maxEntries", configuration.getMaxEntries());
+        writeEntry(writer, "scanParallelism", configuration.getScanParallelism());
+        writeEntry(writer, "watchFolders", configuration.isWatchFolders());
+        writeEntry(writer, "fuzzySearch", configuration.isFuzzySearch());
+        writeEntry(writer, "searchDebounce", configuration.getSearchDebounce());
+    }
+
+    /**
+     * Writes the entries of one section, in the order of the file, which they can be pasted in
+     */
+    public static void writeSection(final Writer writer, final Section section,
+                                    final Configuration configuration,
+                                    final Collection<Application> applications)
+            throws IOException {
+        switch(section) {
+            case FOLDERS:
+                writeEntry(writer, "folders", configuration.getFolders());
+                writeEntry(writer, "executables", configuration.getExecutables());
+                break;
+            case BLACKLIST:
+                writeEntry(writer, "blacklist", configuration.getBlacklist());
+                break;
+            case BAN_WORDS:
+                writeEntry(writer, "banWordFolders", configuration.getBanWordFolders());
+                writeEntry(writer, "banWordExecutables", configuration.getBanWordExecutables());
+                break;
+            case APPLICATIONS:
+                writeString(writer, "applications");
+                writer.write(":[");
+                boolean first = true;
+                for(final Application application : applications) {
+                    if(!first) writer.write(',');
+                    writer.write('\n');
+                    writeApplication(writer, application);
+                    first = false;
+                }
+                writer.write(']');
+                break;
+        }
+    }
+
+    /**
+     * Writes a change on one line, laid out like the file itself so that it reads back the same
+     * way : the settings changed, the paths of the applications removed, then the applications
+     * added or edited
+     */
+    public static void writeChange(final Writer writer, final Map<String, ?> settings,
+                                   final Collection<String> removedPaths,
+                                   final Collection<Application> applications)
+            throws IOException {
+        writer.write('{');
+        for(final Map.Entry<String, ?> setting : settings.entrySet()) {
+            writeEntry(writer, setting.getKey(), setting.getValue());
+        }
+        if(!removedPaths.isEmpty())
+            writeEntry(writer, REMOVED, removedPaths);
+        writeString(writer, "applications");
+        writer.write(":[");
+        boolean first = true;
+        for(final Application application : applications) {
+            if(!first) writer.write(',');
+            writeApplication(writer, application);
+            first = false;
+        }
+        writer.write("]}\n");
+    }
+
+    public static void writeApplication(final Writer writer, final Application application)
+            throws IOException {
+        writer.write('{');
+        writeString(writer, "name");
+        writer.write(':');
+        writeString(writer, application.getName());
+        writer.write(',');
+        writeString(writer, "path");
+        writer.write(':');
+        writeString(writer, application.getExecutablePath().toString());
+        writer.write(',');
+        writeString(writer, "keywords");
+        writer.write(':');
+        writeStrings(writer, application.getKeywords());
+        writer.write(',');
+        writeString(writer, "blacklisted");
+        writer.write(':');
+        writer.write(String.valueOf(application.isBlacklisted()));
+        if(application.isLaunched()) {
+            writer.write(',');
+            writeString(writer, "frecency");
+            writer.write(':');
+            writer.write(String.valueOf(application.getFrecency()));
+            writer.write(',');
+            writeString(writer, "lastLaunch");
+            writer.write(':');
+            writer.write(String.valueOf(application.getLastLaunch()));
+        }
+        writer.write('}');
+    }
+
+    private static void writeEntry(final Writer writer, final String key, final Object value)
+            throws IOException {
+        writeString(writer, key);
+        writer.write(':');
+        if(value instanceof Collection) {
+            writeStrings(writer, (Collection<?>) value);
+        } else {
+            writer.write(String.valueOf(value));
+        }
+        writer.write(',');
+    }
+
+    private static void writeStrings(final Writer writer, final Collection<?> strings)
+            throws IOException {
+        writer.write('[');
+        boolean first = true;
+        for(final Object string : strings) {
+            if(!first) writer.write(',');
+            writeString(writer, String.valueOf(string));
+            first = false;
+        }
+        writer.write(']');
+    }
+
+    private static void writeString(final Writer writer, final String string)
+            throws IOException {
+        writer.write('"');
+        writer.write(JSONValue.escape(string));
+        writer.write('"');
+    }
+
+    /**
+     * The parts of the file which change apart, in the order they are written in
+     */
+    public enum Section {
+        FOLDERS, BLACKLIST, BAN_WORDS, APPLICATIONS
+    }
+
+    private interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    /**
+     * Follows where the parser is : depth 1 is the top level object, 2 a setting's list or the
+     * applications array, 3 an application and 4 its keywords
+     */
+    private class Handler implements ContentHandler {
+        private int depth = 0;
+        private String settingKey = null;
+        private List<String> settingList = null;
+        private boolean inApplications = false;
+
+        // The application being read
+        private boolean inApplication = false;
+        private String applicationKey = null;
+        private String name;
+        private String path;
+        private boolean blacklisted;
+        private List<String> keywords;
+        private Number frecency;
+        private Number lastLaunch;
+
+        @Override
+        public void startJSON() {}
+
+        @Override
+        public void endJSON() {}
+
+        @Override
+        public boolean startObject() {
+            depth++;
+            if(inApplications && depth == 3) {
+                inApplication = true;
+                name = "";
+                path = "";
+                blacklisted = false;
+                keywords = new ArrayList<>();
+                frecency = null;
+                lastLaunch = null;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            if(inApplication && depth == 3) {
+                final Application application = Application.restore(path, name);
+                application.setBlacklisted(blacklisted);
+                application.setKeywords(keywords);
+                if(frecency != null) {
+                    application.setFrecency(frecency.doubleValue());
+                    application.setLastLaunch(lastLaunch != null ? lastLaunch.longValue() : 0L);
+                }
+                applications.add(application);
+                inApplication = false;
+            }
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(final String key) {
+            if(depth == 1) {
+                settingKey = key;
+            } else if(inApplication && depth == 3) {
+                applicationKey = key;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            if(depth == 1) {
+                settingKey = null;
+            } else if(depth == 3) {
+                applicationKey = null;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            if(depth == 1 && "applications".equals(settingKey)) {
+                inApplications = true;
+            } else if(depth == 1) {
+                settingList = new ArrayList<>();
+            }
+            depth++;
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            depth--;
+            if(depth == 1 && inApplications) {
+                inApplications = false;
+            } else if(depth == 1 && settingList != null) {
+                settings.put(settingKey, settingList);
+                settingList = null;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean primitive(final Object value) {
+            if(depth == 1 && settingKey != null) {
+                settings.put(settingKey, value);
+            } else if(depth == 2 && settingList != null) {
+                settingList.add(value != null ? value.toString() : null);
+            } else if(inApplication && depth == 3 && applicationKey != null) {
+                setField(applicationKey, value);
+            } else if(inApplication && depth == 4 && "keywords".equals(applicationKey)) {
+                keywords.add(value != null ? value.toString() : null);
+            }
+            return true;
+        }
+
+        private void setField(final String key, final Object value) {
+            switch(key) {
+                case "name":
+                    name = String.valueOf(value);
+                    break;
+                case "path":
+                    path = String.valueOf(value);
+                    break;
+                case "blacklisted":
+                    blacklisted = Boolean.TRUE.equals(value);
+                    break;
+                case "frecency":
+                    frecency = (Number) value;
+                    break;
+                case "lastLaunch":
+                    lastLaunch = (Number) value;
+                    break;
+                default:
+                    // Unknown field, kept out
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.roux.utils;
+
+import org.roux.application.Application;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A binary copy of data.json, read at startup instead of parsing it. data.json stays the file
+ * to edit : the snapshot records its size and last modified time and is ignored as soon as they
+ * differ, or when its own checksum does not match, then rebuilt from data.json.
+ * <p>
+ * Every string is stored once in a table and decoded once, however many applications share it.
+ * Everything is decoded when the snapshot is read : the library needs all of it right away. The
+ * applications come in the order they were saved in, with their keywords as indexes in the
+ * table.
+ * <p>
+ * The file is read whole into memory rather than mapped : a mapping stays open until garbage
+ * collected, and on Windows an open mapping keeps the next save from replacing the file.
+ */
+public class DataSnapshot {
+
+    private static final String SNAPSHOT_FILE = "data.bin";
+    private static final int MAGIC = 0x524f5558;
+    private static final int VERSION = 1;
+    // Magic, version, data.json size and last modified time, checksum and payload size
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+    private static final int BLACKLISTED = 1;
+    private static final int LAUNCHED = 2;
+
+    private static final String[] LISTS =
+            {"folders", "executables", "blacklist", "banWordFolders", "banWordExecutables"};
+
+    private final ByteBuffer buffer;
+    // Moved around to decode the strings, apart from the buffer being read in order
+    private final ByteBuffer table;
+    private final int[] offsets;
+    private final int stringsStart;
+    private final String[] strings;
+
+    private DataSnapshot(final ByteBuffer buffer) {
+        final int count = buffer.getInt();
+        offsets = new int[count + 1];
+        for(int i = 0; i <= count; i++) {
+            offsets[i] = buffer.getInt();
+        }
+        stringsStart = buffer.position();
+        strings = new String[count];
+        table = buffer.duplicate();
+        buffer.position(stringsStart + offsets[count]);
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return the content of the snapshot matching this data.json, null if there is none
+     */
+    public static DataFile read(final Path json) {
+        final Path file = json.resolveSibling(SNAPSHOT_FILE);
+        if(!Files.exists(file)) return null;
+
+        try {
+            final ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+            if(content.remaining() < HEADER_SIZE) return null;
+
+            final BasicFileAttributes attributes =
+                    Files.readAttributes(json, BasicFileAttributes.class);
+            if(content.getInt() != MAGIC || content.getInt() != VERSION
+                    || content.getLong() != attributes.size()
+                    || content.getLong() != attributes.lastModifiedTime().toMillis()) {
+                return null;
+            }
+            final int checksum = content.getInt();
+            final int payloadSize = content.getInt();
+            if(payloadSize != content.remaining()) return null;
+
+            final ByteBuffer payload = content.slice();
+            final CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if((int) crc.getValue() != checksum) return null;
+
+            return new DataSnapshot(payload).decode();
+        } catch(final IOException | RuntimeException e) {
+            // A broken snapshot only costs a parse of data.json
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of the data.json just saved, replacing the previous one at once
+     *
+     * @return the size of the snapshot, 0 if it could not be written
+     */
+    public static long write(final Path json, final Configuration configuration,
+                             final Collection<Application> applications) {
+        final Path file = json.resolveSibling(SNAPSHOT_FILE);
+        final Path temporary = json.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try {
+            final byte[] payload = encode(configuration, applications);
+            final CRC32 crc = new CRC32();
+            crc.update(payload);
+            final BasicFileAttributes attributes =
+                    Files.readAttributes(json, BasicFileAttributes.class);
+            try(final DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(attributes.size());
+                output.writeLong(attributes.lastModifiedTime().toMillis());
+                output.writeInt((int) crc.getValue());
+                output.writeInt(payload.length);
+                output.write(payload);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            return HEADER_SIZE + payload.length;
+        } catch(final IOException e) {
+            // The snapshot left in place no longer matches data.json, it will not be used
+            e.printStackTrace();
+            try {
+                Files.deleteIfExists(temporary);
+            } catch(final IOException ignored) {
+            }
+            return 0L;
+        }
+    }
+
+    private static byte[] encode(final Configuration configuration,
+                                 final Collection<Application> applications)
+            throws IOException {
+        final Map<String, Integer> indexByString = new LinkedHashMap<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(body);
+        output.writeInt(configuration.getMaxEntries());
+        output.writeInt(configuration.getScanParallelism());
+        output.writeBoolean(configuration.isWatchFolders());
+        output.writeBoolean(configuration.isFuzzySearch());
+        output.writeInt(configuration.getSearchDebounce());
+        writeStrings(output, configuration.getFolders(), indexByString);
+        writeStrings(output, configuration.getExecutables(), indexByString);
+        writeStrings(output, configuration.getBlacklist(), indexByString);
+        writeStrings(output, configuration.getBanWordFolders(), indexByString);
+        writeStrings(output, configuration.getBanWordExecutables(), indexByString);
+        output.writeInt(applications.size());
+        for(final Application application : applications) {
+            output.writeInt(indexOf(application.getName(), indexByString));
+            output.writeInt(indexOf(application.getExecutablePath().toString(), indexByString));
+            final int flags = (application.isBlacklisted() ? BLACKLISTED : 0)
+                    | (application.isLaunched() ? LAUNCHED : 0);
+            output.writeByte(flags);
+            if(application.isLaunched()) {
+                output.writeDouble(application.getFrecency());
+                output.writeLong(application.getLastLaunch());
+            }
+            writeStrings(output, application.getKeywords(), indexByString);
+        }
+        output.flush();
+
+        // The string table goes first, so that reading it tells where the rest starts
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        final DataOutputStream tableOutput = new DataOutputStream(table);
+        final List<byte[]> encoded = new ArrayList<>(indexByString.size());
+        tableOutput.writeInt(indexByString.size());
+        int offset = 0;
+        tableOutput.writeInt(offset);
+        for(final String string : indexByString.keySet()) {
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            offset += bytes.length;
+            tableOutput.writeInt(offset);
+        }
+        for(final byte[] bytes : encoded) {
+            tableOutput.write(bytes);
+        }
+        body.writeTo(tableOutput);
+        tableOutput.flush();
+        return table.toByteArray();
+    }
+
+    private DataFile decode() {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put("maxEntries", (long) buffer.getInt());
+        settings.put("scanParallelism", (long) buffer.getInt());
+        settings.put("watchFolders", buffer.get() != 0);
+        settings.put("fuzzySearch", buffer.get() != 0);
+        settings.put("searchDebounce", (long) buffer.getInt());
+        for(final String list : LISTS) {
+            settings.put(list, readStrings());
+        }
+        final int count = buffer.getInt();
+        final List<Application> applications = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            final String name = getString(buffer.getInt());
+            final String path = getString(buffer.getInt());
+            final Application application = Application.restore(path, name);
+            final int flags = buffer.get();
+            application.setBlacklisted((flags & BLACKLISTED) != 0);
+            if((flags & LAUNCHED) != 0) {
+                application.setFrecency(buffer.getDouble());
+                application.setLastLaunch(buffer.getLong());
+            }
+            application.setKeywords(readStrings());
+            applications.add(application);
+        }
+        return new DataFile(settings, applications);
+    }
+
+    private String getString(final int index) {
+        String string = strings[index];
+        if(string == null) {
+            final byte[] bytes = new byte[offsets[index + 1] - offsets[index]];
+            table.position(stringsStart + offsets[index]);
+            table.get(bytes);
+            strings[index] = string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return string;
+    }
+
+    private List<String> readStrings() {
+        final int count = buffer.getInt();
+        final List<String> list = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            list.add(getString(buffer.getInt()));
+        }
+        return list;
+    }
+
+    private static void writeStrings(final DataOutputStream output,
+                                     final Collection<String> strings,
+                                     final Map<String, Integer> indexByString)
+            throws IOException {
+        output.writeInt(strings.size());
+        for(final String string : strings) {
+            output.writeInt(indexOf(string, indexByString));
+        }
+    }
+
+    private static int indexOf(final String string, final Map<String, Integer> indexByString) {
+        return indexByString.computeIfAbsent(string, key -> indexByString.size());
+    }
+}
@@ -0,0 +1,54 @@
+package org.roux.utils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Knows where a store installs its games, from the small manifest files the store keeps, so that
+ * a source folder does not have to be walked as a whole.
+ */
+public interface DiscoveryProvider {
+
+    /**
+     * @return what the store installed in the folder, or null when this provider does not know
+     * the folder
+     */
+    Discovery discover(Path folder);
+
+    class Discovery {
+        private final List<Path> folders = new ArrayList<>();
+        private final List<Path> executables = new ArrayList<>();
+        private boolean isStoreRoot = false;
+
+        /**
+         * @return the install folders to walk
+         */
+        public List<Path> getFolders() {
+            return folders;
+        }
+
+        /**
+         * @return the executables known without walking anything
+         */
+        public List<Path> getExecutables() {
+            return executables;
+        }
+
+        /**
+         * @return true if the folder is where the store installs its games, holding nothing else :
+         * what is known then replaces the walk of the folder, which is walked as usual otherwise
+         */
+        public boolean isStoreRoot() {
+            return isStoreRoot;
+        }
+
+        public void setStoreRoot(final boolean isStoreRoot) {
+            this.isStoreRoot = isStoreRoot;
+        }
+
+        public boolean isEmpty() {
+            return folders.isEmpty() && executables.isEmpty();
+        }
+    }
+}
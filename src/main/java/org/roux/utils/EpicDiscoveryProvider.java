@@ -0,0 +1,120 @@
+package org.roux.utils;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Epic Games launcher keeps a [id].item JSON file per installed game, holding its install
+ * location and the executable launching it. Games whose executable is known are not walked at
+ * all, the others only in their install location, as long as the folder asked about is the
+ * launcher's install folder. Any other folder is walked as usual.
+ * <p>
+ * The manifests are read once, on the first folder asked about : a provider lasts one scan.
+ */
+public class EpicDiscoveryProvider implements DiscoveryProvider {
+
+    private static final Path DEFAULT_MANIFESTS = Paths.get(
+            System.getenv().getOrDefault("ProgramData", "C:\\ProgramData"),
+            "Epic", "EpicGamesLauncher", "Data", "Manifests");
+
+    private final Path manifests;
+    // Install folder to the executable launching the game, null if unknown
+    private Map<Path, Path> installs = null;
+
+    public EpicDiscoveryProvider() {
+        this(DEFAULT_MANIFESTS);
+    }
+
+    public EpicDiscoveryProvider(final Path manifests) {
+        this.manifests = manifests;
+    }
+
+    @Override
+    public Discovery discover(final Path folder) {
+        if(installs == null)
+            installs = readInstalls();
+
+        final Discovery discovery = new Discovery();
+        installs.forEach((installFolder, executable) -> {
+            if(!installFolder.startsWith(folder)) return;
+            if(executable != null) {
+                discovery.getExecutables().add(executable);
+            } else {
+                discovery.getFolders().add(installFolder);
+            }
+        });
+        // Nothing known, better walk everything
+        if(discovery.isEmpty()) return null;
+
+        discovery.setStoreRoot(isInstallRoot(folder));
+        return discovery;
+    }
+
+    /**
+     * The launcher puts every game in a folder of its own in the install folder : a folder
+     * holding nothing but install folders is that one
+     */
+    private boolean isInstallRoot(final Path folder) {
+        try(final DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+            for(final Path entry : entries) {
+                if(!installs.containsKey(entry)) return false;
+            }
+            return true;
+        } catch(final IOException exception) {
+            System.out.println("failed : " + folder);
+            return false;
+        }
+    }
+
+    private Map<Path, Path> readInstalls() {
+        final Map<Path, Path> installs = new LinkedHashMap<>();
+        if(!Files.isDirectory(manifests)) return installs;
+
+        try(final DirectoryStream<Path> items = Files.newDirectoryStream(manifests, "*.item")) {
+            for(final Path item : items) {
+                final JSONObject manifest = readManifest(item);
+                if(manifest == null) continue;
+
+                try {
+                    readInstall(manifest, installs);
+                } catch(final InvalidPathException exception) {
+                    System.out.println("failed : " + item);
+                }
+            }
+        } catch(final IOException exception) {
+            exception.printStackTrace();
+        }
+        return installs;
+    }
+
+    private static void readInstall(final JSONObject manifest, final Map<Path, Path> installs) {
+        final Object installLocation = manifest.get("InstallLocation");
+        if(installLocation == null) return;
+        final Path installFolder = Paths.get(installLocation.toString());
+        if(!Files.isDirectory(installFolder)) return;
+
+        final Object launchExecutable = manifest.get("LaunchExecutable");
+        final Path executable = launchExecutable != null
+                ? installFolder.resolve(launchExecutable.toString()) : null;
+        installs.put(installFolder,
+                     executable != null && Files.isRegularFile(executable) ? executable : null);
+    }
+
+    private static JSONObject readManifest(final Path item) {
+        try(final BufferedReader reader = Files.newBufferedReader(item, StandardCharsets.UTF_8)) {
+            final Object manifest = new JSONParser().parse(reader);
+            return manifest instanceof JSONObject ? (JSONObject) manifest : null;
+        } catch(final IOException | ParseException exception) {
+            System.out.println("failed : " + item);
+            return null;
+        }
+    }
+}
@@ -1,41 +1,50 @@
 package org.roux.utils;
 
+import javafx.collections.ListChangeListener;
 import org.apache.commons.io.FileUtils;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
+import org.roux.application.Application;
 import org.roux.application.ApplicationLibrary;
+import org.roux.utils.DataFile.Section;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class FileManager {
 
-    private static List<String> FOLDERS = null;
-    private static List<String> EXECUTABLES = null;
-    private static List<String> BLACKLIST = null;
-    private static List<String> BAN_WORD_FOLDERS = null;
-    private static List<String> BAN_WORD_EXECUTABLES = null;
+    /*
+     * Swapped whole on every change, never changed in place : whoever holds a version can read
+     * it from any thread without locking
+     */
+    private static final AtomicReference<Configuration> CONFIGURATION = new AtomicReference<>();
 
     public static final Integer DEFAULT_MAX_ENTRIES = 10;
-    public static Integer MAX_ENTRIES;
-
-    private static JSONObject root;
+    public static final Integer DEFAULT_SCAN_PARALLELISM =
+            Runtime.getRuntime().availableProcessors();
+    public static final Integer DEFAULT_SEARCH_DEBOUNCE = 0;
 
-    static {
-        parse();
-    }
+    private static List<Application> applications = new ArrayList<>();
+    // Null until the library is there to be saved
+    private static Journal journal = null;
+    private static AutosaveScheduler autosave = null;
 
-    public static List<Map<String, Object>> getApplications() {
-        final Object result = root.get("applications");
-        assert result instanceof List;
-        assert ((List<?>) result).get(0) instanceof Map;
-        return (List<Map<String, Object>>) result;
+    /**
+     * @return the applications data.json held at startup
+     */
+    public static List<Application> getApplications() {
+        return applications;
     }
 
     private static File loadData() throws IllegalArgumentException, IOException {
@@ -53,55 +62,76 @@ public class FileManager {
         return file;
     }
 
-    public static void parse() {
+    /**
+     * Reads data.json, through its snapshot when up to date, then the journal on top. Must be
+     * done once before anything else is asked, it is not done on first use so that it can run on
+     * another thread while the window opens.
+     *
+     * @throws IOException    if data.json cannot be read, the settings are left unset
+     * @throws ParseException if data.json is not valid JSON
+     */
+    public static void parse() throws IOException, ParseException {
         System.out.println("Parse...");
-        try(final BufferedReader reader = new BufferedReader(new FileReader(loadData()))) {
-            final JSONParser parser = new JSONParser();
-            root = (JSONObject) parser.parse(reader);
-
-            final Object maxEntries = root.get("maxEntries");
-            MAX_ENTRIES = maxEntries != null ? ((Long) maxEntries).intValue() : DEFAULT_MAX_ENTRIES;
-        } catch(final IOException | ParseException e) {
-            e.printStackTrace();
+        final Path json = loadData().toPath();
+        DataFile dataFile = DataSnapshot.read(json);
+        final boolean fromSnapshot = dataFile != null;
+        if(!fromSnapshot) {
+            // The platform charset, as data.json was always written in it
+            try(final BufferedReader reader = Files.newBufferedReader(
+                    json, Charset.defaultCharset())) {
+                dataFile = DataFile.read(reader);
+            }
+        }
+        final List<DataFile> changes = Journal.read(json);
+        if(!changes.isEmpty()) {
+            System.out.println("Replaying " + changes.size() + " journaled changes");
+            dataFile.apply(changes);
         }
+        applications = dataFile.getApplications();
+
+        final Object maxEntries = dataFile.getSetting("maxEntries");
+        final Object scanParallelism = dataFile.getSetting("scanParallelism");
+        final Object watchFolders = dataFile.getSetting("watchFolders");
+        final Object fuzzySearch = dataFile.getSetting("fuzzySearch");
+        final Object searchDebounce = dataFile.getSetting("searchDebounce");
+        CONFIGURATION.set(new Configuration(
+                0L, dataFile.getList("folders"), dataFile.getList("executables"),
+                dataFile.getList("blacklist"), dataFile.getList("banWordFolders"),
+                dataFile.getList("banWordExecutables"),
+                maxEntries != null ? ((Long) maxEntries).intValue() : DEFAULT_MAX_ENTRIES,
+                scanParallelism != null
+                        ? ((Long) scanParallelism).intValue() : DEFAULT_SCAN_PARALLELISM,
+                watchFolders != null ? (Boolean) watchFolders : false,
+                fuzzySearch != null ? (Boolean) fuzzySearch : true,
+                searchDebounce != null
+                        ? ((Long) searchDebounce).intValue() : DEFAULT_SEARCH_DEBOUNCE));
+        if(!fromSnapshot)
+            DataSnapshot.write(json, getConfiguration(), applications);
     }
 
     public static List<Path> getFilesFromFolder(final Predicate<Path> customPredicate,
                                                 final Path folder) {
         List<Path> list = new ArrayList<>();
-        try {
-            list = Files.walk(folder).parallel()
-                    .filter(path -> path.toFile().isFile() && path.toFile().canExecute())
-                    .filter(path -> ApplicationLibrary.isExtensionAllowed(path.toString()))
-                    .filter(path -> !(path.toFile().isDirectory() && folderContainsBanWord(path)))
-                    .filter(path -> !(path.toFile().isFile() && executableContainsBanWord(path)))
-                    .filter(customPredicate)
-                    .collect(Collectors.toList());
+        final BiPredicate<Path, BasicFileAttributes> visitFilePredicate =
+                ScannerTool.visitFilePredicate(getConfiguration());
+        // Filters on the attributes the walk already read, no extra syscall per file
+        try(final Stream<Path> files = Files.find(
+                folder, Integer.MAX_VALUE,
+                (path, attributes) -> visitFilePredicate.test(path, attributes)
+                        && customPredicate.test(path))) {
+            list = files.collect(Collectors.toList());
         } catch(final IOException exception) {
             exception.printStackTrace();
         }
         return list;
     }
 
-    private static boolean folderContainsBanWord(final Path folder) {
-        return getBanWordFolders().parallelStream()
-                .anyMatch(s -> folder.toString().contains(s));
-    }
-
-    private static boolean executableContainsBanWord(final Path executable) {
-        return getBanWordExecutables().parallelStream()
-                .anyMatch(s -> executable.getFileName().toString().contains(s));
-    }
-
     /**
      * Files ? Which one ? All of them. Well, all the executable one. Mucho timo & memory consumo so
      * !! WARNING !!
      */
     public static List<Path> getFilesFromFolders(final Predicate<Path> customPredicate) {
-        final List<Path> folders = FileManager.getFolders().stream()
-                .map(folder -> Paths.get(folder))
-                .filter(path -> path.toFile().isDirectory())
-                .collect(Collectors.toList());
+        final List<Path> folders = getConfiguration().getSourceFolders();
 
         final List<Path> files = new ArrayList<>();
         for(final Path folder : folders) {
@@ -131,94 +161,134 @@ public class FileManager {
 
     public static long countFilesInFolders() {
         long count = 0;
-        final List<Path> folders = FileManager.getFolders().stream()
-                .map(folder -> Paths.get(folder))
-                .filter(path -> path.toFile().isDirectory())
-                .collect(Collectors.toList());
-        for(final Path folder : folders) {
+        for(final Path folder : getConfiguration().getSourceFolders()) {
             count += countFilesInFolder(folder);
         }
         return count;
     }
 
+    /**
+     * From now on, writes every change of the library and of the settings down in the journal as
+     * it happens, and saves data.json in the background once the changes stop for a while
+     */
+    public static void startSaving(final ApplicationLibrary applicationLibrary) {
+        final Path json = Paths.get("data.json");
+        synchronized(FileManager.class) {
+            journal = new Journal(json);
+            autosave = new AutosaveScheduler(
+                    json, journal, FileManager::getConfiguration,
+                    () -> applicationLibrary.getSnapshot().getApplications());
+        }
+        applicationLibrary.addListener((ListChangeListener<Application>) change -> journal.record(
+                change, () -> autosave.markDirty(Section.APPLICATIONS)));
+    }
+
     public static void save(final ApplicationLibrary applicationLibrary) {
         System.out.println("Saving...");
-        final Map<String, Object> data = new HashMap<>();
-        data.put("maxEntries", MAX_ENTRIES);
-        data.put("folders", getFolders());
-        data.put("executables", getExecutables());
-        data.put("blacklist", getBlacklist());
-        data.put("banWordFolders", getBanWordFolders());
-        data.put("banWordExecutables", getBanWordExecutables());
-        data.put("applications", applicationLibrary.getLibraryAsJsonFriendly());
-        final JSONObject jsonObject = new JSONObject(data);
-        try(final PrintWriter writer = new PrintWriter(new File("data.json"))) {
-            writer.print(jsonObject.toJSONString());
-            writer.flush();
+        if(autosave != null) {
+            // Saves the last changes, the journal is not needed anymore
+            autosave.close();
+            System.out.println("Autosave : " + autosave.getSaveCount() + " saves, "
+                                       + autosave.getTotalBytesWritten() + " bytes written, "
+                                       + "the last one " + autosave.getLastLatencyMillis()
+                                       + " ms after its first edit");
+            return;
+        }
+        final Path json = Paths.get("data.json");
+        final Configuration configuration = getConfiguration();
+        final List<Application> applications = applicationLibrary.getSnapshot().getApplications();
+        try {
+            DataFile.write(json, configuration, applications);
+            DataSnapshot.write(json, configuration, applications);
         } catch(final IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * @return the current version of the settings, which will not change under the caller
+     */
+    public static Configuration getConfiguration() {
+        return CONFIGURATION.get();
+    }
+
     public static List<String> getFolders() {
-        if(FileManager.FOLDERS == null)
-            FileManager.FOLDERS = getData("folders");
-        return FileManager.FOLDERS;
+        return getConfiguration().getFolders();
     }
 
     public static void setFolders(final Collection<String> folders) {
-        getFolders().clear();
-        getFolders().addAll(folders);
+        update("folders", Section.FOLDERS, configuration -> configuration.withFolders(folders),
+               Configuration::getFolders);
     }
 
     public static List<String> getExecutables() {
-        if(FileManager.EXECUTABLES == null)
-            FileManager.EXECUTABLES = getData("executables");
-        return FileManager.EXECUTABLES;
+        return getConfiguration().getExecutables();
     }
 
     public static void setExecutables(final Collection<String> executables) {
-        getExecutables().clear();
-        getExecutables().addAll(executables);
+        update("executables", Section.FOLDERS,
+               configuration -> configuration.withExecutables(executables),
+               Configuration::getExecutables);
     }
 
     public static List<String> getBlacklist() {
-        if(FileManager.BLACKLIST == null)
-            FileManager.BLACKLIST = getData("blacklist");
-        return FileManager.BLACKLIST;
+        return getConfiguration().getBlacklist();
     }
 
     public static void setBlacklist(final Collection<String> blacklist) {
-        getBlacklist().clear();
-        getBlacklist().addAll(blacklist);
+        update("blacklist", Section.BLACKLIST,
+               configuration -> configuration.withBlacklist(blacklist),
+               Configuration::getBlacklist);
+    }
+
+    /**
+     * Adds and removes blacklist entries in a single new version
+     */
+    public static void updateBlacklist(final Collection<String> added,
+                                       final Collection<String> removed) {
+        update("blacklist", Section.BLACKLIST,
+               configuration -> configuration.withBlacklist(added, removed),
+               Configuration::getBlacklist);
+    }
+
+    public static BlacklistIndex getBlacklistIndex() {
+        return getConfiguration().getBlacklistIndex();
     }
 
     public static List<String> getBanWordFolders() {
-        if(FileManager.BAN_WORD_FOLDERS == null)
-            FileManager.BAN_WORD_FOLDERS = getData("banWordFolders");
-        return FileManager.BAN_WORD_FOLDERS;
+        return getConfiguration().getBanWordFolders();
     }
 
     public static void setBanWordFolders(final Collection<String> banWordFolders) {
-        getBanWordFolders().clear();
-        getBanWordFolders().addAll(banWordFolders);
+        update("banWordFolders", Section.BAN_WORDS,
+               configuration -> configuration.withBanWordFolders(banWordFolders),
+               Configuration::getBanWordFolders);
     }
 
     public static List<String> getBanWordExecutables() {
-        if(FileManager.BAN_WORD_EXECUTABLES == null)
-            FileManager.BAN_WORD_EXECUTABLES = getData("banWordExecutables");
-        return FileManager.BAN_WORD_EXECUTABLES;
+        return getConfiguration().getBanWordExecutables();
     }
 
     public static void setBanWordExecutables(final Collection<String> banWordExecutables) {
-        getBanWordExecutables().clear();
-        getBanWordExecutables().addAll(banWordExecutables);
+        update("banWordExecutables", Section.BAN_WORDS,
+               configuration -> configuration.withBanWordExecutables(banWordExecutables),
+               Configuration::getBanWordExecutables);
     }
 
-    /* Utils */
-
-    private static List<String> getData(final String name) {
-        final List<String> data = (List<String>) root.get(name);
-        return data != null ? data : new ArrayList<>();
+    /**
+     * Swaps in a new version of the settings and, when the setting changed, marks its section to
+     * be saved and writes it down in the journal. Synchronized so that the journal gets the
+     * versions in the order they were made.
+     */
+    private static synchronized void update(final String name, final Section section,
+                                            final UnaryOperator<Configuration> change,
+                                            final Function<Configuration, List<String>> setting) {
+        final Configuration before = CONFIGURATION.get();
+        final Configuration after = change.apply(before);
+        CONFIGURATION.set(after);
+        if(journal != null && !setting.apply(before).equals(setting.apply(after))) {
+            autosave.markDirty(section);
+            journal.recordSetting(name, setting.apply(after));
+        }
     }
 }
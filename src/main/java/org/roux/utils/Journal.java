@@ -0,0 +1,217 @@
+package org.roux.utils;
+
+import javafx.collections.ListChangeListener;
+import org.json.simple.parser.ParseException;
+import org.roux.application.Application;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * The changes made since data.json was last written, appended to data.journal as they happen,
+ * one line each, so that a crash loses none of them. A line is laid out like data.json itself :
+ * the settings it changes, the paths of the applications removed, and the applications added or
+ * edited, whole.
+ * <p>
+ * When data.json is written again, the journal is moved aside along with the state to write,
+ * then deleted once written. Both are replayed on top of data.json at startup, a save which did
+ * not finish only replays changes which may already be in data.json, to the same result.
+ *
+ * @see AutosaveScheduler
+ */
+public class Journal {
+
+    private static final String JOURNAL_FILE = "data.journal";
+    private static final String SAVING_FILE = "data.journal.saving";
+
+    private final Path file;
+    private final Path savingFile;
+
+    // Guarded by this
+    private Writer writer = null;
+
+    public Journal(final Path json) {
+        this.file = json.resolveSibling(JOURNAL_FILE);
+        this.savingFile = json.resolveSibling(SAVING_FILE);
+        dropPartialChange();
+    }
+
+    /**
+     * @return the changes left by the previous runs, oldest first
+     */
+    public static List<DataFile> read(final Path json) {
+        final List<DataFile> changes = new ArrayList<>();
+        read(json.resolveSibling(SAVING_FILE), changes);
+        read(json.resolveSibling(JOURNAL_FILE), changes);
+        return changes;
+    }
+
+    private static void read(final Path file, final List<DataFile> changes) {
+        if(!Files.exists(file)) return;
+
+        try(final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                changes.add(DataFile.read(new StringReader(line)));
+            }
+        } catch(final ParseException e) {
+            // The last line was cut short by a crash, the ones before are whole
+            System.out.println("Journal " + file + " ends with a partial change");
+        } catch(final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes down what a change of the library did, by path : the applications gone, and the
+     * ones added or whose content changed
+     *
+     * @param beforeWrite called right before writing, unless the change changed nothing
+     */
+    public void record(final ListChangeListener.Change<? extends Application> change,
+                       final Runnable beforeWrite) {
+        final Map<Path, Application> removedByPath = new LinkedHashMap<>();
+        final List<Application> added = new ArrayList<>();
+        while(change.next()) {
+            if(change.wasPermutated() || change.wasUpdated()) continue;
+            change.getRemoved().forEach(application -> removedByPath.put(
+                    application.getExecutablePath(), application));
+            added.addAll(change.getAddedSubList());
+        }
+
+        final List<Application> changed = new ArrayList<>();
+        for(final Application application : added) {
+            final Application before = removedByPath.remove(application.getExecutablePath());
+            if(before == null || !sameContent(before, application))
+                changed.add(application);
+        }
+        final List<String> removedPaths = new ArrayList<>();
+        removedByPath.keySet().forEach(path -> removedPaths.add(path.toString()));
+        if(!changed.isEmpty() || !removedPaths.isEmpty()) {
+            beforeWrite.run();
+            append(Collections.emptyMap(), removedPaths, changed);
+        }
+    }
+
+    /**
+     * Writes down the new value of a setting of data.json
+     */
+    public void recordSetting(final String name, final Object value) {
+        append(Collections.singletonMap(name, value), Collections.emptyList(),
+               Collections.emptyList());
+    }
+
+    private synchronized void append(final Map<String, ?> settings,
+                                     final Collection<String> removedPaths,
+                                     final Collection<Application> changed) {
+        try {
+            final StringWriter line = new StringWriter();
+            DataFile.writeChange(line, settings, removedPaths, changed);
+            if(writer == null)
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                                                 StandardOpenOption.CREATE,
+                                                 StandardOpenOption.APPEND);
+            writer.write(line.toString());
+            writer.flush();
+        } catch(final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return true if changes from a previous run are still waiting to be in data.json
+     */
+    public boolean hasChanges() {
+        return file.toFile().length() > 0 || savingFile.toFile().length() > 0;
+    }
+
+    /**
+     * Takes the state to write in data.json and moves the journal aside at once : every change
+     * moved aside is in the state, the ones coming after go to a new journal
+     *
+     * @param capture takes the state, must not wait on a change being journaled, and gives null
+     *                when there is nothing to save
+     * @return the state, or null and the journal is left in place
+     */
+    public synchronized <T> T checkpoint(final Supplier<T> capture) {
+        final T state = capture.get();
+        if(state != null)
+            moveAside();
+        return state;
+    }
+
+    /**
+     * Deletes the changes moved aside by the last checkpoint, once data.json holds them
+     */
+    public void discardCheckpoint() throws IOException {
+        Files.deleteIfExists(savingFile);
+    }
+
+    public synchronized void close() {
+        try {
+            if(writer != null) {
+                writer.close();
+                writer = null;
+            }
+        } catch(final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Cuts a change left partial by a crash, it was not replayed and the next one would be
+     * appended to it
+     */
+    private void dropPartialChange() {
+        if(!Files.exists(file)) return;
+
+        try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                                                         StandardOpenOption.WRITE)) {
+            final byte[] bytes = Files.readAllBytes(file);
+            int end = bytes.length;
+            while(end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            if(end < bytes.length)
+                channel.truncate(end);
+        } catch(final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the journal and moves it aside, after the changes of a previous save which did not
+     * finish, if any. When it cannot be moved, it stays in place and is replayed on top of a
+     * data.json already holding it, to the same result.
+     */
+    private void moveAside() {
+        close();
+        try {
+            if(Files.exists(file)) {
+                if(Files.exists(savingFile)) {
+                    try(final OutputStream output = Files.newOutputStream(
+                            savingFile, StandardOpenOption.APPEND)) {
+                        Files.copy(file, output);
+                    }
+                    Files.delete(file);
+                } else {
+                    Files.move(file, savingFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+        } catch(final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean sameContent(final Application before, final Application after) {
+        return before.getName().equals(after.getName())
+                && before.isBlacklisted() == after.isBlacklisted()
+                && before.getKeywords().equals(after.getKeywords())
+                && before.getFrecency() == after.getFrecency()
+                && before.getLastLaunch() == after.getLastLaunch();
+    }
+}
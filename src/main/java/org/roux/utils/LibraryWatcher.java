@@ -0,0 +1,157 @@
+package org.roux.utils;
+
+import javafx.application.Platform;
+import org.roux.application.ApplicationLibrary;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static org.roux.utils.ScannerTool.visitFilePredicate;
+import static org.roux.utils.ScannerTool.visitFolderPredicate;
+
+/**
+ * Keeps the library up to date without scanning : the source folders and their game folders are
+ * watched, created executables get added and deleted ones removed right away.
+ * <p>
+ * New folders, and whole folders when the watch service overflows, are rescanned once things
+ * have been quiet for a little while, since an install keeps writing for some time.
+ */
+public class LibraryWatcher {
+
+    private static final long QUIET_PERIOD_MILLIS = 2000;
+
+    private final ApplicationLibrary applicationLibrary;
+    private final Map<WatchKey, Path> folderByKey = new HashMap<>();
+    private final Set<Path> sourceFolders = new HashSet<>();
+    private final Set<Path> pendingRescans = new HashSet<>();
+    private WatchService watchService;
+    private Thread thread;
+
+    public LibraryWatcher(final ApplicationLibrary applicationLibrary) {
+        this.applicationLibrary = applicationLibrary;
+    }
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch(final IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        final Configuration configuration = FileManager.getConfiguration();
+        for(final Path folder : configuration.getSourceFolders()) {
+            sourceFolders.add(folder);
+            register(folder);
+            try(final DirectoryStream<Path> stream =
+                        Files.newDirectoryStream(folder, Files::isDirectory)) {
+                for(final Path gameFolder : stream) {
+                    if(visitFolderPredicate(configuration).test(gameFolder))
+                        register(gameFolder);
+                }
+            } catch(final IOException e) {
+                e.printStackTrace();
+            }
+        }
+        thread = new Thread(this::watch, "library-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if(thread != null)
+            thread.interrupt();
+        try {
+            if(watchService != null)
+                watchService.close();
+        } catch(final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void register(final Path folder) {
+        try {
+            folderByKey.put(folder.register(watchService, ENTRY_CREATE, ENTRY_DELETE), folder);
+        } catch(final IOException e) {
+            System.out.println("failed to watch : " + folder);
+        }
+    }
+
+    private void watch() {
+        try {
+            while(!Thread.currentThread().isInterrupted()) {
+                final WatchKey key = pendingRescans.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                if(key == null) {
+                    rescanPendingFolders();
+                    continue;
+                }
+                final Path folder = folderByKey.get(key);
+                for(final WatchEvent<?> event : key.pollEvents()) {
+                    if(folder != null)
+                        onEvent(folder, event);
+                }
+                if(!key.reset())
+                    folderByKey.remove(key);
+            }
+        } catch(final InterruptedException | ClosedWatchServiceException ignored) {
+            // Watcher stopped
+        }
+    }
+
+    private void onEvent(final Path folder, final WatchEvent<?> event) {
+        if(event.kind() == OVERFLOW) {
+            pendingRescans.add(folder);
+            return;
+        }
+
+        final Path child = folder.resolve((Path) event.context());
+        // Each event goes by the settings of the moment
+        final Configuration configuration = FileManager.getConfiguration();
+        if(event.kind() == ENTRY_DELETE) {
+            Platform.runLater(() -> applicationLibrary.removeExecutables(child));
+            return;
+        }
+
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(child, BasicFileAttributes.class,
+                                              LinkOption.NOFOLLOW_LINKS);
+        } catch(final IOException e) {
+            // Already gone
+            return;
+        }
+        if(attributes.isDirectory()) {
+            if(sourceFolders.contains(folder) && visitFolderPredicate(configuration).test(child))
+                register(child);
+            pendingRescans.add(child);
+        } else if(visitFolderPredicate(configuration).test(folder)
+                && visitFilePredicate(configuration).test(child, attributes)) {
+            Platform.runLater(() -> applicationLibrary.addExecutables(List.of(child)));
+        }
+    }
+
+    private void rescanPendingFolders() {
+        final List<Path> folders = new ArrayList<>(pendingRescans);
+        pendingRescans.clear();
+        // No need to walk a folder twice when its parent is rescanned too
+        folders.removeIf(folder -> folders.stream()
+                .anyMatch(other -> other != folder && folder.startsWith(other)));
+
+        final Configuration configuration = FileManager.getConfiguration();
+        final ParallelScanner scanner =
+                new ParallelScanner(1, visitFolderPredicate(configuration),
+                                    visitFilePredicate(configuration),
+                                    new ScanManifest(ScanManifest.fingerprint(configuration)));
+        try {
+            scanner.submit(folders).join().forEach((folder, result) -> Platform.runLater(
+                    () -> applicationLibrary.updateFolder(folder, result.getFiles())));
+        } finally {
+            scanner.shutdown();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.roux.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Walks the source folders on a {@link ForkJoinPool}. Every source folder gets its own task, and
+ * so does every sub folder of a "wide" directory (think steamapps/common and its hundreds of
+ * games). Everything else is walked inline by the task that found it.
+ * <p>
+ * Each task gathers its executables in its own list, lists are merged when tasks are joined.
+ * <p>
+ * Directories left untouched since the previous scan are not listed again, what the previous
+ * {@link ScanManifest} recorded for them is reused instead.
+ */
+public class ParallelScanner {
+
+    /**
+     * A directory with at least this many sub folders gets one task per sub folder
+     */
+    public static final int WIDE_DIRECTORY_THRESHOLD = 8;
+
+    private final ForkJoinPool pool;
+    private final Predicate<Path> visitFolderPredicate;
+    private final BiPredicate<Path, BasicFileAttributes> visitFilePredicate;
+    private final ScanManifest previousManifest;
+    private final ScanManifest manifest;
+
+    private final Map<Path, LongAdder> visitedFilesByFolder = new LinkedHashMap<>();
+    // Only read to be displayed, a slightly stale value is fine and saves a barrier per file
+    private Path currentFile;
+    private volatile boolean isCancelled = false;
+    private Consumer<List<Path>> onFound = executables -> {};
+
+    public ParallelScanner(final int parallelism,
+                           final Predicate<Path> visitFolderPredicate,
+                           final BiPredicate<Path, BasicFileAttributes> visitFilePredicate,
+                           final ScanManifest previousManifest) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.visitFolderPredicate = visitFolderPredicate;
+        this.visitFilePredicate = visitFilePredicate;
+        this.previousManifest = previousManifest;
+        this.manifest = new ScanManifest(previousManifest.getFingerprint());
+    }
+
+    /**
+     * Starts walking the given folders, the result maps each folder to what was found in it
+     */
+    public ForkJoinTask<Map<Path, Result>> submit(final List<Path> folders) {
+        folders.forEach(folder -> visitedFilesByFolder.put(folder, new LongAdder()));
+        return pool.submit(new RecursiveTask<>() {
+            @Override
+            protected Map<Path, Result> compute() {
+                final Map<Path, DirectoryTask> tasks = new LinkedHashMap<>();
+                for(final Path folder : folders) {
+                    tasks.put(folder, new DirectoryTask(folder, visitedFilesByFolder.get(folder)));
+                }
+                invokeAll(tasks.values());
+                final Map<Path, Result> results = new LinkedHashMap<>();
+                tasks.forEach((folder, task) -> results.put(folder, task.join()));
+                return results;
+            }
+        });
+    }
+
+    /**
+     * @param onFound called from the walking threads with the executables of each directory, as
+     *                soon as it has been walked
+     */
+    public void setOnFound(final Consumer<List<Path>> onFound) {
+        this.onFound = onFound;
+    }
+
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @return the manifest of what has been walked so far, complete once the scan is done
+     */
+    public ScanManifest getManifest() {
+        return manifest;
+    }
+
+    public long getVisitedFiles() {
+        return visitedFilesByFolder.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public long getVisitedFiles(final Path folder) {
+        final LongAdder visited = visitedFilesByFolder.get(folder);
+        return visited != null ? visited.sum() : 0L;
+    }
+
+    public Path getCurrentFile() {
+        return currentFile;
+    }
+
+    public static class Result {
+        private final List<Path> files = new ArrayList<>();
+        private long filesCount = 0L;
+
+        private void merge(final Result other) {
+            files.addAll(other.files);
+            filesCount += other.filesCount;
+        }
+
+        public List<Path> getFiles() {
+            return files;
+        }
+
+        public long getFilesCount() {
+            return filesCount;
+        }
+    }
+
+    private class DirectoryTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final LongAdder visitedFiles;
+
+        private DirectoryTask(final Path directory, final LongAdder visitedFiles) {
+            this.directory = directory;
+            this.visitedFiles = visitedFiles;
+        }
+
+        @Override
+        protected Result compute() {
+            final Result result = new Result();
+            visit(directory, result);
+            return result;
+        }
+
+        private void visit(final Path directory, final Result result) {
+            if(isCancelled || !visitFolderPredicate.test(directory)) return;
+
+            final long lastModified;
+            try {
+                lastModified = Files.getLastModifiedTime(directory).toMillis();
+            } catch(final IOException exception) {
+                System.out.println("failed : " + directory);
+                return;
+            }
+
+            final List<Path> subFolders = new ArrayList<>();
+            final ScanManifest.Entry unchanged =
+                    previousManifest.getUnchanged(directory, lastModified);
+            if(unchanged != null) {
+                for(final String subFolder : unchanged.getSubFolders()) {
+                    subFolders.add(directory.resolve(subFolder));
+                }
+                final List<Path> executables = new ArrayList<>(unchanged.getExecutables().length);
+                for(final String executable : unchanged.getExecutables()) {
+                    executables.add(directory.resolve(executable));
+                }
+                if(!executables.isEmpty())
+                    onFound.accept(executables);
+                result.files.addAll(executables);
+                result.filesCount += unchanged.getFilesCount();
+                visitedFiles.add(unchanged.getFilesCount());
+                manifest.put(directory, unchanged);
+            } else {
+                final List<Path> executables = new ArrayList<>();
+                long filesCount = 0L;
+                boolean isListed = false;
+                try(final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    for(final Path entry : stream) {
+                        if(isCancelled) return;
+
+                        final BasicFileAttributes attributes;
+                        try {
+                            attributes = Files.readAttributes(
+                                    entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        } catch(final IOException exception) {
+                            // Deleted meanwhile or denied, the rest of the directory still counts
+                            System.out.println("failed : " + entry);
+                            continue;
+                        }
+                        if(attributes.isDirectory()) {
+                            subFolders.add(entry);
+                        } else {
+                            currentFile = entry;
+                            filesCount++;
+                            if(visitFilePredicate.test(entry, attributes)) {
+                                executables.add(entry);
+                            }
+                        }
+                    }
+                    isListed = true;
+                } catch(final IOException | DirectoryIteratorException exception) {
+                    // What was listed before the failure is kept
+                    System.out.println("failed : " + directory);
+                }
+                // Shared counters are only touched once per directory
+                visitedFiles.add(filesCount);
+                if(!executables.isEmpty())
+                    onFound.accept(executables);
+                result.files.addAll(executables);
+                result.filesCount += filesCount;
+                // Partly listed, it is listed again next time
+                if(isListed)
+                    manifest.put(directory, lastModified, filesCount, subFolders, executables);
+            }
+
+            if(subFolders.size() >= WIDE_DIRECTORY_THRESHOLD) {
+                final List<DirectoryTask> tasks = new ArrayList<>(subFolders.size());
+                subFolders.forEach(subFolder -> tasks.add(new DirectoryTask(subFolder,
+                                                                            visitedFiles)));
+                invokeAll(tasks);
+                tasks.forEach(task -> result.merge(task.join()));
+            } else {
+                subFolders.forEach(subFolder -> visit(subFolder, result));
+            }
+        }
+    }
+}
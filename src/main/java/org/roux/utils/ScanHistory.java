@@ -0,0 +1,86 @@
+package org.roux.utils;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers how many files each source folder held during the last scan, so the next one can
+ * estimate its progress without walking everything twice. Stored next to data.json.
+ */
+public class ScanHistory {
+
+    private static final String HISTORY_FILE = "scan-history.json";
+
+    private final Map<String, Long> filesCountByFolder = new HashMap<>();
+
+    public static ScanHistory load() {
+        final ScanHistory history = new ScanHistory();
+        final File file = new File(HISTORY_FILE);
+        if(!file.exists()) return history;
+
+        try(final BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            final JSONObject root = (JSONObject) new JSONParser().parse(reader);
+            for(final Object key : root.keySet()) {
+                final Object value = root.get(key);
+                if(value instanceof Long)
+                    history.filesCountByFolder.put(key.toString(), (Long) value);
+            }
+        } catch(final IOException | ParseException | ClassCastException e) {
+            e.printStackTrace();
+        }
+        return history;
+    }
+
+    /**
+     * Saves the history, less the folders which are gone since
+     */
+    public void save() {
+        filesCountByFolder.keySet().removeIf(folder -> {
+            try {
+                return !Files.isDirectory(Paths.get(folder));
+            } catch(final InvalidPathException e) {
+                return true;
+            }
+        });
+        final JSONObject jsonObject = new JSONObject(filesCountByFolder);
+        try(final PrintWriter writer = new PrintWriter(new File(HISTORY_FILE))) {
+            writer.print(jsonObject.toJSONString());
+            writer.flush();
+        } catch(final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the given folders which have never been scanned before
+     */
+    public List<Path> getUncovered(final Collection<Path> folders) {
+        return folders.stream()
+                .filter(folder -> !filesCountByFolder.containsKey(folder.toString()))
+                .collect(Collectors.toList());
+    }
+
+    public long getFilesCount(final Path folder) {
+        return filesCountByFolder.getOrDefault(folder.toString(), 0L);
+    }
+
+    public long getFilesCount(final Collection<Path> folders) {
+        return folders.stream().mapToLong(this::getFilesCount).sum();
+    }
+
+    public void setFilesCount(final Path folder, final long filesCount) {
+        filesCountByFolder.put(folder.toString(), filesCount);
+    }
+}
@@ -0,0 +1,158 @@
+package org.roux.utils;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the last scan saw in each directory : its last modified time, its sub folders and the
+ * executables it directly holds. A directory whose last modified time did not change since does
+ * not need to be listed again, its entry can be reused as is.
+ * <p>
+ * Stored next to data.json, and thrown away whenever the ban words change since they decide what
+ * is kept in there.
+ */
+public class ScanManifest {
+
+    private static final String MANIFEST_FILE = "scan-manifest.dat";
+    private static final int MAGIC = 0x5343414e;
+    private static final int VERSION = 1;
+
+    private final String fingerprint;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    public ScanManifest(final String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return a fingerprint of everything deciding which folders and executables get kept
+     */
+    public static String fingerprint(final Configuration configuration) {
+        return String.join("\n", configuration.getBanWordFolders())
+                + "\0" + String.join("\n", configuration.getBanWordExecutables());
+    }
+
+    public static ScanManifest load(final String fingerprint) {
+        final ScanManifest manifest = new ScanManifest(fingerprint);
+        final File file = new File(MANIFEST_FILE);
+        if(!file.exists()) return manifest;
+
+        try(final DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if(input.readInt() != MAGIC || input.readInt() != VERSION
+                    || !input.readUTF().equals(fingerprint)) {
+                return manifest;
+            }
+            final int count = input.readInt();
+            for(int i = 0; i < count; i++) {
+                final Path directory = Paths.get(input.readUTF());
+                final long lastModified = input.readLong();
+                final long filesCount = input.readLong();
+                final String[] subFolders = readNames(input);
+                final String[] executables = readNames(input);
+                manifest.entries.put(directory,
+                                     new Entry(lastModified, filesCount, subFolders, executables));
+            }
+        } catch(final IOException e) {
+            e.printStackTrace();
+            manifest.entries.clear();
+        }
+        return manifest;
+    }
+
+    public void save() {
+        try(final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(MANIFEST_FILE)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(fingerprint);
+            output.writeInt(entries.size());
+            for(final Map.Entry<Path, Entry> entry : entries.entrySet()) {
+                output.writeUTF(entry.getKey().toString());
+                output.writeLong(entry.getValue().lastModified);
+                output.writeLong(entry.getValue().filesCount);
+                writeNames(output, entry.getValue().subFolders);
+                writeNames(output, entry.getValue().executables);
+            }
+        } catch(final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the entry of this directory if it has not been modified since, null otherwise
+     */
+    public Entry getUnchanged(final Path directory, final long lastModified) {
+        final Entry entry = entries.get(directory);
+        return entry != null && entry.lastModified == lastModified ? entry : null;
+    }
+
+    public void put(final Path directory, final long lastModified, final long filesCount,
+                    final List<Path> subFolders, final List<Path> executables) {
+        entries.put(directory, new Entry(lastModified, filesCount,
+                                         toNames(subFolders), toNames(executables)));
+    }
+
+    void put(final Path directory, final Entry entry) {
+        entries.put(directory, entry);
+    }
+
+    private static String[] toNames(final List<Path> paths) {
+        final String[] names = new String[paths.size()];
+        for(int i = 0; i < names.length; i++) {
+            names[i] = paths.get(i).getFileName().toString();
+        }
+        return names;
+    }
+
+    private static String[] readNames(final DataInputStream input) throws IOException {
+        final String[] names = new String[input.readInt()];
+        for(int i = 0; i < names.length; i++) {
+            names[i] = input.readUTF();
+        }
+        return names;
+    }
+
+    private static void writeNames(final DataOutputStream output, final String[] names)
+            throws IOException {
+        output.writeInt(names.length);
+        for(final String name : names) {
+            output.writeUTF(name);
+        }
+    }
+
+    public static class Entry {
+        private final long lastModified;
+        private final long filesCount;
+        private final String[] subFolders;
+        private final String[] executables;
+
+        private Entry(final long lastModified, final long filesCount,
+                      final String[] subFolders, final String[] executables) {
+            this.lastModified = lastModified;
+            this.filesCount = filesCount;
+            this.subFolders = subFolders;
+            this.executables = executables;
+        }
+
+        public long getFilesCount() {
+            return filesCount;
+        }
+
+        public String[] getSubFolders() {
+            return subFolders;
+        }
+
+        public String[] getExecutables() {
+            return executables;
+        }
+    }
+}
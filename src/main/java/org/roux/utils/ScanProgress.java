@@ -0,0 +1,53 @@
+package org.roux.utils;
+
+/**
+ * Turns the counters sampled from the scanner into a throughput and an estimated time left.
+ * Sampled at a fixed rate by the publishing thread only, never by the walking ones.
+ */
+public class ScanProgress {
+
+    /**
+     * Weight of the last sample in the throughput, smooths out directories walked in a burst
+     */
+    private static final double SMOOTHING = 0.1;
+
+    private long lastNanos = System.nanoTime();
+    private long lastVisited = 0L;
+    private double filesPerSecond = 0.0d;
+    private long visited = 0L;
+    private long total = 0L;
+
+    public void sample(final long visited, final long total) {
+        final long now = System.nanoTime();
+        final long elapsedNanos = now - lastNanos;
+        if(elapsedNanos > 0) {
+            final double instant = (visited - lastVisited) * 1e9d / elapsedNanos;
+            filesPerSecond = filesPerSecond == 0.0d
+                    ? instant : filesPerSecond + SMOOTHING * (instant - filesPerSecond);
+        }
+        lastNanos = now;
+        lastVisited = visited;
+        this.visited = visited;
+        this.total = total;
+    }
+
+    public double getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    /**
+     * @return the estimated seconds left, -1 while the throughput is still unknown
+     */
+    public long getSecondsLeft() {
+        if(filesPerSecond < 1.0d) return -1;
+        return (long) Math.ceil(Math.max(0L, total - visited) / filesPerSecond);
+    }
+
+    @Override
+    public String toString() {
+        final long secondsLeft = getSecondsLeft();
+        final String eta = secondsLeft < 0
+                ? "--:--" : String.format("%02d:%02d", secondsLeft / 60, secondsLeft % 60);
+        return String.format("%,.0f files/s - %s left", filesPerSecond, eta);
+    }
+}
@@ -1,9 +1,6 @@
 package org.roux.utils;
 
-import javafx.beans.property.LongProperty;
-import javafx.beans.property.SimpleLongProperty;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
+import javafx.application.Platform;
 import javafx.concurrent.Task;
 import org.roux.application.ApplicationLibrary;
 
@@ -11,47 +8,103 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class ScannerTool extends Task<String> {
 
-    private final Predicate<Path> visitPredicate = path -> {
-        return !folderContainsBanWord(path);
-    };
+    /**
+     * Progress is published to the dialog at about 30 frames per second, whatever the number of
+     * files walked in between
+     */
+    private static final long PROGRESS_REFRESH_MILLIS = 1000 / 30;
 
-    private final Predicate<Path> filePredicate = path -> {
-        return ApplicationLibrary.isExtensionAllowed(path.toString())
-                && path.toFile().canExecute() && !executableContainsBanWord(path);
-    };
+    public static Predicate<Path> visitFolderPredicate(final Configuration configuration) {
+        return path -> !configuration.folderContainsBanWord(path);
+    }
 
-    private final LongProperty longProperty;
-    private final StringProperty stringProperty;
-    private RecursiveConfig recursiveConfig;
+    /**
+     * Cheapest checks first : the name, then the attributes the walk already read, and only then
+     * an actual access check for the few files left
+     */
+    public static BiPredicate<Path, BasicFileAttributes> visitFilePredicate(
+            final Configuration configuration) {
+        return (path, attributes) -> {
+            final Path fileName = path.getFileName();
+            return fileName != null
+                    && ApplicationLibrary.isExtensionAllowed(fileName.toString())
+                    && !configuration.executableContainsBanWord(path)
+                    && attributes.isRegularFile()
+                    && Files.isExecutable(path);
+        };
+    }
 
-    private long fileCount = 0;
-    private List<Path> files = new ArrayList<>();
+    // The whole scan goes by the settings as they were when it was made
+    private final Configuration configuration = FileManager.getConfiguration();
+    private final Predicate<Path> visitFolderPredicate = visitFolderPredicate(configuration);
+    private final BiPredicate<Path, BasicFileAttributes> visitFilePredicate =
+            visitFilePredicate(configuration);
+    private final RecursiveConfig recursiveConfig = new RecursiveConfig(visitFolderPredicate);
+    // Built by call() : the manifest and the history are loaded off the FX thread
+    private volatile ParallelScanner parallelScanner = null;
+    private ScanHistory scanHistory = null;
 
-    public ScannerTool() {
-        longProperty = new SimpleLongProperty();
-        stringProperty = new SimpleStringProperty();
-    }
+    // Asked in turn about each source folder, the first one knowing it decides what gets walked
+    private final List<DiscoveryProvider> discoveryProviders =
+            List.of(new SteamDiscoveryProvider(), new EpicDiscoveryProvider());
 
+    private long fileCount = 0;
+    // Filled by the walking threads, drained at each progress refresh
+    private final Queue<Path> found = new ConcurrentLinkedQueue<>();
+    // Store manifests and the walk may both find an executable, it is published once
+    private final Set<Path> files = new LinkedHashSet<>();
+    private Consumer<List<Path>> onFound = batch -> {};
+
+    /**
+     * @throws ExecutionException if the walk failed, the scan then ends failed and incomplete,
+     *                            nothing of it is saved
+     */
     @Override
-    protected String call() {
-        recursiveConfig =
-                new RecursiveConfig(visitPredicate, filePredicate, longProperty, stringProperty);
-        fileCount = countFiles(recursiveConfig);
-        longProperty.addListener((observable, oldValue, newValue) -> {
-            if(newValue != null)
-                updateProgress(newValue.longValue(), fileCount);
-        });
-        stringProperty.addListener((observable, oldValue, newValue) -> {
-            if(newValue != null)
-                updateValue(stringProperty.get());
-        });
-        files = scan(recursiveConfig);
+    protected String call() throws ExecutionException {
+        scanHistory = ScanHistory.load();
+        final ParallelScanner parallelScanner =
+                new ParallelScanner(configuration.getScanParallelism(),
+                                    visitFolderPredicate, visitFilePredicate,
+                                    ScanManifest.load(ScanManifest.fingerprint(configuration)));
+        parallelScanner.setOnFound(found::addAll);
+        this.parallelScanner = parallelScanner;
+        // Stopped while loading, before cancelled() could reach the scanner
+        if(isCancelled())
+            parallelScanner.cancel();
+
+        final List<Path> folders = new ArrayList<>();
+        for(final Path sourceFolder : configuration.getSourceFolders()) {
+            folders.addAll(discover(sourceFolder));
+        }
+        // Only the folders no previous scan has seen are walked twice, the others are estimated
+        countFiles(recursiveConfig, scanHistory.getUncovered(folders));
+        fileCount = scanHistory.getFilesCount(folders);
+        try {
+            scan(parallelScanner, folders);
+        } finally {
+            parallelScanner.shutdown();
+        }
+        if(!parallelScanner.isCancelled()) {
+            scanHistory.save();
+            parallelScanner.getManifest().save();
+        }
         return null;
     }
 
@@ -59,33 +112,121 @@ public class ScannerTool extends Task<String> {
     protected void cancelled() {
         super.cancelled();
         recursiveConfig.cancel();
+        final ParallelScanner parallelScanner = this.parallelScanner;
+        if(parallelScanner != null)
+            parallelScanner.cancel();
     }
 
-    public List<Path> scan(final RecursiveConfig recursiveConfig) {
-        recursiveConfig.setScanType(ScanType.GATHER_FILES);
-        final List<Path> folders = FileManager.getFolders().stream()
-                .map(folder -> Paths.get(folder))
-                .filter(path -> path.toFile().isDirectory())
-                .collect(Collectors.toList());
-        for(final Path folder : folders) {
-            walk(folder, recursiveConfig);
+    /**
+     * @return the folders to walk for this source folder, only the install folders when it is a
+     * store's own install folder
+     */
+    private List<Path> discover(final Path sourceFolder) {
+        for(final DiscoveryProvider provider : discoveryProviders) {
+            final DiscoveryProvider.Discovery discovery = provider.discover(sourceFolder);
+            if(discovery == null) continue;
+
+            for(final Path executable : discovery.getExecutables()) {
+                try {
+                    final BasicFileAttributes attributes =
+                            Files.readAttributes(executable, BasicFileAttributes.class);
+                    if(visitFolderPredicate.test(executable.getParent())
+                            && visitFilePredicate.test(executable, attributes))
+                        found.add(executable);
+                } catch(final IOException exception) {
+                    System.out.println("failed : " + executable);
+                }
+            }
+            // Elsewhere the store's games are next to others, which only the walk finds
+            return discovery.isStoreRoot() ? discovery.getFolders() : List.of(sourceFolder);
+        }
+        return List.of(sourceFolder);
+    }
+
+    /**
+     * @param onFound called on the FX thread with each batch of executables found, while the
+     *                scan is still running
+     */
+    public void setOnFound(final Consumer<List<Path>> onFound) {
+        this.onFound = onFound;
+    }
+
+    public void scan(final ParallelScanner parallelScanner, final List<Path> folders)
+            throws ExecutionException {
+        final ForkJoinTask<Map<Path, ParallelScanner.Result>> task =
+                parallelScanner.submit(folders);
+        final ScanProgress scanProgress = new ScanProgress();
+        while(!task.isDone()) {
+            final long visited = parallelScanner.getVisitedFiles();
+            final long total = estimateTotal(parallelScanner, folders);
+            scanProgress.sample(visited, total);
+            updateProgress(visited, total);
+            updateMessage(scanProgress.toString());
+            final Path currentFile = parallelScanner.getCurrentFile();
+            if(currentFile != null)
+                updateValue(currentFile.toString());
+            publishFound();
+            try {
+                task.get(PROGRESS_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+            } catch(final TimeoutException ignored) {
+                // Still walking, refresh the progress
+            } catch(final InterruptedException exception) {
+                // Cancelled, what has been found so far is kept
+                parallelScanner.cancel();
+                break;
+            } catch(final ExecutionException exception) {
+                // Stopped partway, the folders left are not known to be empty
+                exception.printStackTrace();
+                publishFound();
+                throw exception;
+            }
         }
-        return recursiveConfig.getFiles();
+        publishFound();
+        if(parallelScanner.isCancelled() || !task.isDone() || task.isCompletedAbnormally())
+            return;
+
+        final long visited = parallelScanner.getVisitedFiles();
+        updateProgress(visited, visited);
+        task.join().forEach(
+                (folder, result) -> scanHistory.setFilesCount(folder, result.getFilesCount()));
     }
 
-    public long countFiles(final RecursiveConfig recursiveConfig) {
-        recursiveConfig.setScanType(ScanType.COUNT_FILES);
-        final List<Path> folders = FileManager.getFolders().stream()
-                .map(folder -> Paths.get(folder))
-                .filter(path -> path.toFile().isDirectory())
-                .collect(Collectors.toList());
+    private void publishFound() {
+        final List<Path> batch = new ArrayList<>();
+        synchronized(files) {
+            Path path;
+            while((path = found.poll()) != null) {
+                if(files.add(path))
+                    batch.add(path);
+            }
+        }
+        if(batch.isEmpty()) return;
+
+        Platform.runLater(() -> onFound.accept(batch));
+    }
 
+    public long countFiles(final RecursiveConfig recursiveConfig, final List<Path> folders) {
         for(final Path folder : folders) {
+            final long before = recursiveConfig.getFilesCount();
             walk(folder, recursiveConfig);
+            scanHistory.setFilesCount(folder, recursiveConfig.getFilesCount() - before);
         }
         return recursiveConfig.getFilesCount();
     }
 
+    /**
+     * The estimate is refined as the walk goes : each folder counts for at least what has been
+     * visited in it so far
+     */
+    private long estimateTotal(final ParallelScanner parallelScanner, final List<Path> folders) {
+        long total = 0L;
+        for(final Path folder : folders) {
+            total += Math.max(scanHistory.getFilesCount(folder),
+                              parallelScanner.getVisitedFiles(folder));
+        }
+        return total;
+    }
+
     private void walk(final Path start,
                       final RecursiveConfig recursiveConfig) {
         try {
@@ -95,50 +236,31 @@ public class ScannerTool extends Task<String> {
         }
     }
 
+    /**
+     * @return every executable found so far, even when the scan has been cancelled
+     */
     public List<Path> getFiles() {
-        if(recursiveConfig.isCancelled) return null;
-        return files;
+        synchronized(files) {
+            return new ArrayList<>(files);
+        }
     }
 
     public long getFilesCount() {
         return fileCount;
     }
 
-    private static boolean folderContainsBanWord(final Path folder) {
-        return FileManager.getBanWordFolders().parallelStream()
-                .anyMatch(s -> folder.toString().contains(s));
-    }
-
-    private static boolean executableContainsBanWord(final Path executable) {
-        return FileManager.getBanWordExecutables().parallelStream()
-                .anyMatch(s -> executable.getFileName().toString().contains(s));
-    }
-
+    /**
+     * Sequential visitor only counting files, used for the folders the scan history lacks
+     */
     private static class RecursiveConfig implements FileVisitor<Path> {
 
-        private final LongProperty longProperty;
-        private final StringProperty stringProperty;
         private final Predicate<Path> visitFolderPredicate;
-        private final Predicate<Path> visitFilePredicate;
-        private ScanType scanType = ScanType.COUNT_FILES;
 
-        private final List<Path> files = new ArrayList<>();
         private long filesCount = 0L;
         private boolean isCancelled = false;
 
-        public RecursiveConfig(final Predicate<Path> visitFolderPredicate,
-                               final Predicate<Path> visitFilePredicate,
-                               final LongProperty longProperty,
-                               final StringProperty stringProperty) {
+        public RecursiveConfig(final Predicate<Path> visitFolderPredicate) {
             this.visitFolderPredicate = visitFolderPredicate;
-            this.visitFilePredicate = visitFilePredicate;
-            this.longProperty = longProperty;
-            this.stringProperty = stringProperty;
-        }
-
-        public void init() {
-            files.clear();
-            filesCount = 0;
         }
 
         public void cancel() {
@@ -158,15 +280,7 @@ public class ScannerTool extends Task<String> {
         public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
             if(isCancelled) return FileVisitResult.TERMINATE;
 
-            if(scanType.equals(ScanType.GATHER_FILES)) {
-                stringProperty.set(file.toString());
-                longProperty.set(longProperty.get() + 1);
-                if(visitFilePredicate.test(file)) {
-                    files.add(file);
-                }
-            } else if(scanType.equals(ScanType.COUNT_FILES)) {
-                filesCount++;
-            }
+            filesCount++;
             return FileVisitResult.CONTINUE;
         }
 
@@ -174,8 +288,6 @@ public class ScannerTool extends Task<String> {
         public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
             if(isCancelled) return FileVisitResult.TERMINATE;
 
-            if(scanType.equals(ScanType.GATHER_FILES))
-                System.out.println("failed : " + file);
             return FileVisitResult.CONTINUE;
         }
 
@@ -186,20 +298,8 @@ public class ScannerTool extends Task<String> {
             return FileVisitResult.CONTINUE;
         }
 
-        public void setScanType(final ScanType scanType) {
-            this.scanType = scanType;
-        }
-
-        public List<Path> getFiles() {
-            return files;
-        }
-
         public long getFilesCount() {
             return filesCount;
         }
     }
-
-    enum ScanType {
-        COUNT_FILES, GATHER_FILES
-    }
-}
\ No newline at end of file
+}
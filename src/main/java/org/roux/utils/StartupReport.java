@@ -0,0 +1,34 @@
+package org.roux.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * When each phase of the startup ended, from the launch. The phases run on several threads at
+ * once, so each one is given as a time since the launch rather than as a duration.
+ */
+public class StartupReport {
+
+    private static final long START = System.nanoTime();
+    private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+
+    /**
+     * Records the end of a phase, now
+     */
+    public static synchronized void mark(final String phase) {
+        PHASES.put(phase, (System.nanoTime() - START) / 1_000_000);
+    }
+
+    /**
+     * Records the last phase and prints every phase, in the order they ended
+     */
+    public static synchronized void print(final String lastPhase) {
+        mark(lastPhase);
+        final StringJoiner report = new StringJoiner(", ", "Startup : ", "");
+        PHASES.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .forEach(phase -> report.add(phase.getKey() + " at " + phase.getValue() + " ms"));
+        System.out.println(report);
+    }
+}
@@ -0,0 +1,72 @@
+package org.roux.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Steam keeps an appmanifest_[id].acf file per installed game in steamapps, naming the game's
+ * folder in steamapps/common. Only those folders get walked, leftovers of uninstalled games are
+ * left alone.
+ */
+public class SteamDiscoveryProvider implements DiscoveryProvider {
+
+    private static final String STEAMAPPS = "steamapps";
+    private static final String COMMON = "common";
+    private static final Pattern INSTALL_DIR =
+            Pattern.compile("\"installdir\"\\s+\"((?:[^\"\\\\]|\\\\.)*)\"",
+                            Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public Discovery discover(final Path folder) {
+        final Path steamapps;
+        if(isNamed(folder, COMMON) && isNamed(folder.getParent(), STEAMAPPS)) {
+            steamapps = folder.getParent();
+        } else if(isNamed(folder, STEAMAPPS)) {
+            steamapps = folder;
+        } else {
+            return null;
+        }
+
+        final Path common = steamapps.resolve(COMMON);
+        final Discovery discovery = new Discovery();
+        discovery.setStoreRoot(true);
+        try(final DirectoryStream<Path> manifests =
+                    Files.newDirectoryStream(steamapps, "appmanifest_*.acf")) {
+            for(final Path manifest : manifests) {
+                final String installDir = readInstallDir(manifest);
+                if(installDir == null) continue;
+
+                final Path installFolder = common.resolve(installDir);
+                if(Files.isDirectory(installFolder))
+                    discovery.getFolders().add(installFolder);
+            }
+        } catch(final IOException exception) {
+            exception.printStackTrace();
+            return null;
+        }
+        // Nothing known, better walk everything
+        return discovery.isEmpty() ? null : discovery;
+    }
+
+    private static String readInstallDir(final Path manifest) {
+        try {
+            final String content = new String(Files.readAllBytes(manifest), StandardCharsets.UTF_8);
+            final Matcher matcher = INSTALL_DIR.matcher(content);
+            if(matcher.find())
+                return matcher.group(1).replaceAll("\\\\(.)", "$1");
+        } catch(final IOException exception) {
+            System.out.println("failed : " + manifest);
+        }
+        return null;
+    }
+
+    private static boolean isNamed(final Path path, final String name) {
+        return path != null && path.getFileName() != null
+                && path.getFileName().toString().equalsIgnoreCase(name);
+    }
+}